@@ -17,10 +17,14 @@ package org.jboss.as.controller.client;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import javax.security.auth.callback.CallbackHandler;
 
+import org.jboss.as.controller.client.impl.PooledModelControllerClient;
 import org.jboss.as.controller.client.impl.RemotingModelControllerClient;
 import org.jboss.dmr.ModelNode;
 
@@ -101,6 +105,141 @@ public interface ModelControllerClient extends Closeable {
      */
     OperationResponse executeOperation(Operation operation, OperationMessageHandler messageHandler) throws IOException;
 
+    /**
+     * Execute an operation synchronously and materialize only the selected parts of the response.
+     *
+     * @param operation the operation to execute
+     * @param projection the parts of the response to materialize
+     * @return the selected parts of the response
+     * @throws IOException if an I/O error occurs while executing the operation
+     * @see #executeProjected(Operation, OperationMessageHandler, ResponseProjection)
+     */
+    default ModelNode executeProjected(ModelNode operation, ResponseProjection projection) throws IOException {
+        return executeProjected(Operation.Factory.create(operation), OperationMessageHandler.DISCARD, projection);
+    }
+
+    /**
+     * Execute an operation synchronously, optionally receiving progress reports, and materialize only the selected parts of the
+     * response.
+     * <p>
+     * Use this for operations with large responses like recursive {@code read-resource} operations, when only a few attributes
+     * are needed. Implementations which decode the response incrementally skip the parts which are not selected without
+     * building them. The default implementation executes the operation and applies the projection to the complete response.
+     * <p>
+     * Note that associated input-streams have to be closed by the caller, after the operation completed
+     * {@link OperationAttachments#isAutoCloseStreams()}.
+     *
+     * @param operation the operation to execute
+     * @param messageHandler the message handler to use for operation progress reporting, or {@code null} for none
+     * @param projection the parts of the response to materialize
+     * @return the selected parts of the response
+     * @throws IOException if an I/O error occurs while executing the operation
+     */
+    default ModelNode executeProjected(Operation operation, OperationMessageHandler messageHandler,
+            ResponseProjection projection) throws IOException {
+        return projection.apply(execute(operation, messageHandler));
+    }
+
+    /**
+     * Execute an operation synchronously and report the response to a visitor.
+     *
+     * @param operation the operation to execute
+     * @param visitor the visitor receiving the structure of the response
+     * @throws IOException if an I/O error occurs while executing the operation
+     * @see #executeStreaming(Operation, OperationMessageHandler, ModelNodeVisitor)
+     */
+    default void executeStreaming(ModelNode operation, ModelNodeVisitor visitor) throws IOException {
+        executeStreaming(Operation.Factory.create(operation), OperationMessageHandler.DISCARD, visitor);
+    }
+
+    /**
+     * Execute an operation synchronously, optionally receiving progress reports, and report the response to a visitor.
+     * <p>
+     * Use this for operations with large responses like recursive {@code read-resource} operations, when only parts of the
+     * response are needed. Implementations which are able to decode the response incrementally report it while it's read,
+     * without building the response {@code ModelNode}. In this case the visitor is called by the thread reading the response.
+     * The default implementation executes the operation and reports the complete response. Input streams which the server may
+     * associate with the response are not available.
+     * <p>
+     * Note that associated input-streams have to be closed by the caller, after the operation completed
+     * {@link OperationAttachments#isAutoCloseStreams()}.
+     *
+     * @param operation the operation to execute
+     * @param messageHandler the message handler to use for operation progress reporting, or {@code null} for none
+     * @param visitor the visitor receiving the structure of the response
+     * @throws IOException if an I/O error occurs while executing the operation
+     */
+    default void executeStreaming(Operation operation, OperationMessageHandler messageHandler, ModelNodeVisitor visitor)
+            throws IOException {
+        ModelNodeVisitor.walk(execute(operation, messageHandler), visitor);
+    }
+
+    /**
+     * Execute an operation asynchronously.
+     *
+     * @param operation the operation to execute
+     * @return the completion stage of the operation result
+     */
+    default CompletionStage<ModelNode> executeAsync(ModelNode operation) {
+        return executeAsync(Operation.Factory.create(operation), OperationMessageHandler.DISCARD);
+    }
+
+    /**
+     * Execute an operation asynchronously, optionally receiving progress reports.
+     * <p>
+     * The remoting based clients complete the returned stage on a thread of the
+     * {@linkplain ModelControllerClientConfiguration#getExecutor() client executor}, never on the thread which reads the
+     * response from the connection. Dependent stages may therefore block, for instance to execute another operation
+     * synchronously.
+     * <p>
+     * Note that associated input-streams have to be closed by the caller, after the operation completed
+     * {@link OperationAttachments#isAutoCloseStreams()}.
+     *
+     * @param operation the operation to execute
+     * @param messageHandler the message handler to use for operation progress reporting, or {@code null} for none
+     * @return the completion stage of the operation result
+     */
+    default CompletionStage<ModelNode> executeAsync(Operation operation, OperationMessageHandler messageHandler) {
+        return executeOperationAsync(operation, messageHandler).thenApply(response -> {
+            try (OperationResponse or = response) {
+                return or.getResponseNode();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Execute an operation asynchronously, optionally receiving progress reports, with the response to the operation making
+     * available any input streams that the server may associate with the response.
+     * <p>
+     * Cancelling the returned stage using {@link CompletableFuture#cancel(boolean)} cancels the operation on the server. The
+     * default implementation executes the operation synchronously, implementations which are able to execute operations without
+     * blocking the calling thread override this method.
+     * <p>
+     * The remoting based clients complete the returned stage on a thread of the
+     * {@linkplain ModelControllerClientConfiguration#getExecutor() client executor}, never on the thread which reads the
+     * response from the connection. Dependent stages may therefore block, for instance to read the attached response streams or
+     * to execute another operation synchronously.
+     * <p>
+     * Note that associated input-streams have to be closed by the caller, after the operation completed
+     * {@link OperationAttachments#isAutoCloseStreams()}.
+     *
+     * @param operation the operation to execute
+     * @param messageHandler the message handler to use for operation progress reporting, or {@code null} for none
+     * @return the completion stage of the operation response
+     */
+    default CompletionStage<OperationResponse> executeOperationAsync(Operation operation,
+            OperationMessageHandler messageHandler) {
+        final CompletableFuture<OperationResponse> result = new CompletableFuture<>();
+        try {
+            result.complete(executeOperation(operation, messageHandler));
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
     /** Factory methods for creating a {@code ModelControllerClient}. */
     class Factory {
 
@@ -249,5 +388,18 @@ public interface ModelControllerClient extends Closeable {
         public static ModelControllerClient create(final ModelControllerClientConfiguration configuration) {
             return RemotingModelControllerClient.create(configuration);
         }
+
+        /**
+         * Create a client instance which spreads the operations across several connections to the same host. Operations are
+         * dispatched to the connection with the least operations in flight.
+         *
+         * @param configuration the controller client configuration
+         * @param connections the number of connections
+         * @return the client
+         */
+        public static PooledModelControllerClient createPooled(final ModelControllerClientConfiguration configuration,
+                final int connections) {
+            return PooledModelControllerClient.create(configuration, connections);
+        }
     }
 }
@@ -23,6 +23,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import javax.security.auth.callback.CallbackHandler;
 
 import org.jboss.as.controller.client.impl.ClientConfigurationImpl;
+import org.jboss.as.controller.client.logging.ControllerClientLogger;
 
 /**
  * The configuration used to create the {@code ModelControllerClient}.
@@ -79,8 +80,69 @@ public interface ModelControllerClientConfiguration extends Closeable {
      */
     String getClientBindAddress();
 
+    /**
+     * Whether the client uses a remoting endpoint shared with other clients of the same worker configuration instead of
+     * creating its own endpoint. The shared endpoint is reference counted and closed when the last client using it is closed.
+     *
+     * @return {@code true} if the endpoint is shared
+     */
+    default boolean isSharedEndpoint() {
+        return false;
+    }
+
+    /**
+     * Get the number of XNIO I/O threads of the endpoint used by the client.
+     *
+     * @return the number of I/O threads, or {@code 0} to use the XNIO default
+     */
+    default int getWorkerIoThreads() {
+        return 0;
+    }
+
+    /**
+     * Get the number of XNIO task threads of the endpoint used by the client.
+     *
+     * @return the number of task threads, or {@code 0} to use the XNIO default
+     */
+    default int getWorkerTaskThreads() {
+        return 0;
+    }
+
+    /**
+     * Get the size of the buffer between the connection and the reader of a response stream.
+     *
+     * @return the buffer size in bytes, or {@code 0} to use the default of 64 KiB
+     */
+    default int getResponseStreamBufferSize() {
+        return 0;
+    }
+
+    /**
+     * Get the number of attached response streams which are read ahead as soon as a response arrives. Read-ahead streams are
+     * fetched in parallel and keep up to {@link #getResponseStreamBufferSize()} unread bytes in memory, bytes which don't fit
+     * are spilled to a temporary file until they are read.
+     *
+     * @return the number of streams to read ahead, or {@code 0} to read streams lazily when they are first read
+     */
+    default int getResponseStreamReadAhead() {
+        return 0;
+    }
+
+    /**
+     * Whether identical read-only operations which are in flight at the same time share one request. Callers attaching to a
+     * pending request receive a copy of its response. Operations executed with an {@link OperationMessageHandler} other than
+     * {@link OperationMessageHandler#DISCARD} are never shared, since only the caller starting the request would receive the
+     * progress messages.
+     *
+     * @return {@code true} to coalesce read-only operations
+     */
+    default boolean isCoalesceReadOperations() {
+        return false;
+    }
+
     class Builder {
 
+        private static final int DEFAULT_EXECUTOR_SIZE = 6;
         private static final AtomicInteger executorCount = new AtomicInteger();
         private static final ThreadGroup defaultThreadGroup = new ThreadGroup("management-client-thread");
 
@@ -90,6 +152,14 @@ public interface ModelControllerClientConfiguration extends Closeable {
         private CallbackHandler handler;
         private String protocol;
         private int connectionTimeout = 0;
+        private ExecutorService executor;
+        private int executorSize = DEFAULT_EXECUTOR_SIZE;
+        private boolean sharedEndpoint;
+        private int workerIoThreads;
+        private int workerTaskThreads;
+        private int responseStreamBufferSize;
+        private int responseStreamReadAhead;
+        private boolean coalesceReadOperations;
 
         public Builder() {
         }
@@ -161,15 +231,133 @@ public interface ModelControllerClientConfiguration extends Closeable {
             return this;
         }
 
+        /**
+         * Sets the executor used for asynchronous tasks of the client, e.g. reading attachments or operation responses. The
+         * executor is owned by the caller and is not shut down when the client is closed.
+         *
+         * @param executor the executor, or {@code null} to create a fixed thread pool of {@link #setExecutorSize(int)} threads
+         * @return a builder to allow continued configuration
+         */
+        public Builder setExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads of the executor created by the client if no executor was set using
+         * {@link #setExecutor(ExecutorService)}. Defaults to {@value #DEFAULT_EXECUTOR_SIZE}.
+         *
+         * @param executorSize the number of threads
+         * @return a builder to allow continued configuration
+         */
+        public Builder setExecutorSize(int executorSize) {
+            if (executorSize < 1) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("executorSize", executorSize, 0);
+            }
+            this.executorSize = executorSize;
+            return this;
+        }
+
+        /**
+         * Sets whether the client uses a remoting endpoint shared with other clients of the same worker configuration. Many
+         * clients then multiplex their connections on one set of I/O threads, which makes creating and closing clients cheap.
+         *
+         * @param sharedEndpoint {@code true} to use a shared endpoint, {@code false} to create an endpoint per client
+         * @return a builder to allow continued configuration
+         */
+        public Builder setSharedEndpoint(boolean sharedEndpoint) {
+            this.sharedEndpoint = sharedEndpoint;
+            return this;
+        }
+
+        /**
+         * Sets the number of XNIO I/O threads of the endpoint used by the client.
+         *
+         * @param workerIoThreads the number of I/O threads, or {@code 0} to use the XNIO default
+         * @return a builder to allow continued configuration
+         */
+        public Builder setWorkerIoThreads(int workerIoThreads) {
+            if (workerIoThreads < 0) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("workerIoThreads", workerIoThreads, -1);
+            }
+            this.workerIoThreads = workerIoThreads;
+            return this;
+        }
+
+        /**
+         * Sets the number of XNIO task threads of the endpoint used by the client.
+         *
+         * @param workerTaskThreads the number of task threads, or {@code 0} to use the XNIO default
+         * @return a builder to allow continued configuration
+         */
+        public Builder setWorkerTaskThreads(int workerTaskThreads) {
+            if (workerTaskThreads < 0) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("workerTaskThreads", workerTaskThreads, -1);
+            }
+            this.workerTaskThreads = workerTaskThreads;
+            return this;
+        }
+
+        /**
+         * Sets the size of the buffer between the connection and the reader of a response stream. Larger buffers let the
+         * connection run ahead of a slow reader.
+         *
+         * @param responseStreamBufferSize the buffer size in bytes, or {@code 0} to use the default of 64 KiB
+         * @return a builder to allow continued configuration
+         */
+        public Builder setResponseStreamBufferSize(int responseStreamBufferSize) {
+            if (responseStreamBufferSize < 0) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("responseStreamBufferSize", responseStreamBufferSize,
+                        -1);
+            }
+            this.responseStreamBufferSize = responseStreamBufferSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of attached response streams which are read ahead as soon as a response arrives. Use
+         * {@link Integer#MAX_VALUE} to read all streams ahead.
+         *
+         * @param responseStreamReadAhead the number of streams to read ahead, or {@code 0} to read streams lazily
+         * @return a builder to allow continued configuration
+         */
+        public Builder setResponseStreamReadAhead(int responseStreamReadAhead) {
+            if (responseStreamReadAhead < 0) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("responseStreamReadAhead", responseStreamReadAhead,
+                        -1);
+            }
+            this.responseStreamReadAhead = responseStreamReadAhead;
+            return this;
+        }
+
+        /**
+         * Sets whether identical read-only operations which are in flight at the same time share one request. Only operations
+         * without attachments and progress message handler whose result is returned as {@link org.jboss.dmr.ModelNode} are
+         * coalesced.
+         *
+         * @param coalesceReadOperations {@code true} to coalesce read-only operations
+         * @return a builder to allow continued configuration
+         */
+        public Builder setCoalesceReadOperations(boolean coalesceReadOperations) {
+            this.coalesceReadOperations = coalesceReadOperations;
+            return this;
+        }
+
         /**
          * Builds the configuration object based on this builder's settings.
          *
          * @return the configuration
          */
         public ModelControllerClientConfiguration build() {
-            ExecutorService executorService = Executors.newFixedThreadPool(6);
+            if (executor != null) {
+                return new ClientConfigurationImpl(hostName, port, handler, executor, false,
+                        connectionTimeout, protocol, clientBindAddress, sharedEndpoint, workerIoThreads, workerTaskThreads,
+                        responseStreamBufferSize, responseStreamReadAhead, coalesceReadOperations);
+            }
+            ExecutorService executorService = Executors.newFixedThreadPool(executorSize);
             return new ClientConfigurationImpl(hostName, port, handler, executorService, true,
-                    connectionTimeout, protocol, clientBindAddress);
+                    connectionTimeout, protocol, clientBindAddress, sharedEndpoint, workerIoThreads, workerTaskThreads,
+                    responseStreamBufferSize, responseStreamReadAhead, coalesceReadOperations);
         }
     }
 }
@@ -0,0 +1,649 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.jboss.as.controller.client.helpers.Operations;
+import org.jboss.as.controller.client.impl.ManagementClientEndpoints;
+import org.jboss.as.controller.client.impl.RemotingModelControllerClient;
+import org.jboss.as.controller.client.logging.ControllerClientLogger;
+import org.jboss.as.protocol.StreamUtils;
+import org.jboss.dmr.ModelNode;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.threads.AsyncFuture;
+
+/**
+ * Executes the same operation against a fleet of servers in parallel.
+ * <p>
+ * All targets use the shared remoting {@link Endpoint} of the management clients and one executor. The clients of the targets
+ * are created on first use and kept open until the fleet is closed. The number of operations in flight is bounded across all
+ * executions of the fleet. Each target has its own timeout, a target which doesn't respond in time is reported as failed
+ * without affecting the other targets. Its operation is cancelled on the server and keeps its slot until the server has
+ * acknowledged the cancellation, so operations which time out don't pile up on the servers. A server which doesn't acknowledge
+ * the cancellation within the cancellation grace period loses the slot regardless, so hung servers can't block the fleet.
+ *
+ * <pre>
+ * try (ModelControllerClientFleet fleet = ModelControllerClientFleet.builder()
+ *         .addTarget("server-one", "10.0.0.1", 9990)
+ *         .addTarget("server-two", "10.0.0.2", 9990)
+ *         .setMaxInFlight(16)
+ *         .setTimeout(10, TimeUnit.SECONDS)
+ *         .build()) {
+ *     Map&lt;String, TargetResult&gt; results = fleet.execute(operation, result -&gt; log(result))
+ *             .toCompletableFuture().join();
+ * }
+ * </pre>
+ */
+public class ModelControllerClientFleet implements Closeable {
+
+    /**
+     * Creates a new builder for a fleet.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final List<Target> targets;
+    private final int maxInFlight;
+    private final long timeoutMillis;
+    private final long cancellationGraceMillis;
+    private final ExecutorService executor;
+    private final boolean shutdownExecutor;
+    private final AtomicInteger inFlight;
+    private final ConcurrentLinkedQueue<Runnable> pending;
+    private Endpoint endpoint;
+    private boolean closed;
+
+    private ModelControllerClientFleet(Builder builder, ExecutorService executor, boolean shutdownExecutor) {
+        this.maxInFlight = builder.maxInFlight;
+        this.timeoutMillis = builder.timeoutMillis;
+        this.cancellationGraceMillis = builder.cancellationGraceMillis;
+        this.executor = executor;
+        this.shutdownExecutor = shutdownExecutor;
+        this.inFlight = new AtomicInteger();
+        this.pending = new ConcurrentLinkedQueue<>();
+        final List<Target> targets = new ArrayList<>(builder.targets.size());
+        for (Map.Entry<String, ModelControllerClientConfiguration> entry : builder.targets.entrySet()) {
+            ModelControllerClientConfiguration configuration = entry.getValue();
+            if (configuration instanceof HostTarget) {
+                configuration = ((HostTarget) configuration).configure(builder, executor);
+            }
+            targets.add(new Target(entry.getKey(), configuration));
+        }
+        this.targets = Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * Returns the names of the targets in the order they were added.
+     *
+     * @return the target names
+     */
+    public List<String> getTargets() {
+        final List<String> names = new ArrayList<>(targets.size());
+        for (Target target : targets) {
+            names.add(target.name);
+        }
+        return names;
+    }
+
+    /**
+     * Executes the operation against all targets.
+     *
+     * @param operation the operation to execute
+     * @return the completion stage of the results by target name, in the order the targets were added. The stage always
+     *         completes normally, failures are reported per target.
+     */
+    public CompletionStage<Map<String, TargetResult>> execute(ModelNode operation) {
+        return execute(operation, null);
+    }
+
+    /**
+     * Executes the operation against all targets and notifies the listener about each result as soon as it's available.
+     *
+     * @param operation the operation to execute
+     * @param listener the listener called for each target result, or {@code null} for none
+     * @return the completion stage of the results by target name, in the order the targets were added. The stage always
+     *         completes normally, failures are reported per target.
+     */
+    public CompletionStage<Map<String, TargetResult>> execute(ModelNode operation,
+            Consumer<? super TargetResult> listener) {
+        synchronized (this) {
+            if (closed) {
+                throw ControllerClientLogger.ROOT_LOGGER.objectIsClosed(ModelControllerClientFleet.class.getSimpleName());
+            }
+        }
+        final Execution execution = new Execution(operation, listener);
+        if (targets.isEmpty()) {
+            execution.done.complete(Collections.emptyMap());
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            final int index = i;
+            pending.add(() -> dispatch(execution, index));
+        }
+        drain();
+        return execution.done;
+    }
+
+    @Override
+    public void close() throws IOException {
+        final Endpoint endpoint;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            endpoint = this.endpoint;
+            this.endpoint = null;
+        }
+        for (Target target : targets) {
+            target.close();
+        }
+        if (endpoint != null) {
+            ManagementClientEndpoints.release(endpoint);
+        }
+        if (shutdownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private synchronized Endpoint getOrCreateEndpoint() throws IOException {
+        if (closed) {
+            throw ControllerClientLogger.ROOT_LOGGER.objectIsClosed(ModelControllerClientFleet.class.getSimpleName());
+        }
+        if (endpoint == null) {
+            endpoint = ManagementClientEndpoints.acquire(0, 0);
+        }
+        return endpoint;
+    }
+
+    // ------------------------------------------------------ dispatch
+
+    private void drain() {
+        while (!pending.isEmpty()) {
+            final int current = inFlight.get();
+            if (current >= maxInFlight) {
+                // a completing operation will pick up the pending work
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            final Runnable task = pending.poll();
+            if (task == null) {
+                inFlight.decrementAndGet();
+            } else {
+                task.run();
+            }
+        }
+    }
+
+    private void dispatch(Execution execution, int index) {
+        final Target target = targets.get(index);
+        // the result is reported as soon as it's known, the slot is held until the operation is done on the server
+        final CompletableFuture<ModelNode> result = new CompletableFuture<>();
+        final CompletableFuture<Void> settled = new CompletableFuture<>();
+        if (timeoutMillis > 0) {
+            result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        result.whenComplete((response, failure) -> execution.complete(index,
+                new TargetResult(target.name, response, unwrap(failure))));
+        settled.whenComplete((ignored, failure) -> {
+            inFlight.decrementAndGet();
+            drain();
+        });
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    settled.complete(null);
+                    return;
+                }
+                final AsyncFuture<ModelNode> request;
+                try {
+                    request = target.getOrCreateClient().executeRequestAsync(execution.operation,
+                            OperationMessageHandler.DISCARD);
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                    settled.complete(null);
+                    return;
+                }
+                request.addListener(new AsyncFuture.Listener<ModelNode, Void>() {
+                    @Override
+                    public void handleComplete(AsyncFuture<? extends ModelNode> future, Void attachment) {
+                        final ModelNode response;
+                        try {
+                            response = future.getUninterruptibly();
+                        } catch (ExecutionException e) {
+                            handleFailed(future, e.getCause(), attachment);
+                            return;
+                        }
+                        settle(() -> result.complete(response), settled);
+                    }
+
+                    @Override
+                    public void handleFailed(AsyncFuture<? extends ModelNode> future, Throwable cause, Void attachment) {
+                        settle(() -> result.completeExceptionally(cause), settled);
+                    }
+
+                    @Override
+                    public void handleCancelled(AsyncFuture<? extends ModelNode> future, Void attachment) {
+                        settle(() -> result.completeExceptionally(new CancellationException()), settled);
+                    }
+                }, null);
+                // cancel the operation on the server if the target timed out
+                result.whenComplete((response, failure) -> {
+                    if (failure instanceof TimeoutException) {
+                        request.asyncCancel(false);
+                        // a hung server may never acknowledge the cancellation, release the slot after the grace period
+                        if (cancellationGraceMillis > 0) {
+                            settled.completeOnTimeout(null, cancellationGraceMillis, TimeUnit.MILLISECONDS);
+                        } else {
+                            settled.complete(null);
+                        }
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            settled.complete(null);
+        }
+    }
+
+    /**
+     * Reports the outcome of an operation and frees its slot. Listeners of the request are called by the thread which receives
+     * the response, so the listener of the fleet and the next dispatch run on the executor.
+     */
+    private void settle(Runnable outcome, CompletableFuture<Void> settled) {
+        final Runnable task = () -> {
+            try {
+                outcome.run();
+            } finally {
+                settled.complete(null);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        if ((failure instanceof CompletionException || failure instanceof ExecutionException)
+                && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+
+    private final class Target implements Closeable {
+
+        private final String name;
+        private final ModelControllerClientConfiguration configuration;
+        private RemotingModelControllerClient client;
+        private boolean closed;
+
+        private Target(String name, ModelControllerClientConfiguration configuration) {
+            this.name = name;
+            this.configuration = configuration;
+        }
+
+        private synchronized RemotingModelControllerClient getOrCreateClient() throws IOException {
+            if (closed) {
+                throw ControllerClientLogger.ROOT_LOGGER.objectIsClosed(ModelControllerClientFleet.class.getSimpleName());
+            }
+            if (client == null) {
+                client = RemotingModelControllerClient.create(configuration, getOrCreateEndpoint());
+            }
+            return client;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            if (client != null) {
+                StreamUtils.safeClose(client);
+                client = null;
+            } else {
+                StreamUtils.safeClose(configuration);
+            }
+        }
+    }
+
+    private final class Execution {
+
+        private final PreparedOperation operation;
+        private final Consumer<? super TargetResult> listener;
+        private final TargetResult[] results;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Map<String, TargetResult>> done;
+
+        private Execution(ModelNode operation, Consumer<? super TargetResult> listener) {
+            // encode the operation once for all targets
+            this.operation = Operation.Factory.prepare(operation);
+            this.listener = listener;
+            this.results = new TargetResult[targets.size()];
+            this.remaining = new AtomicInteger(targets.size());
+            this.done = new CompletableFuture<>();
+        }
+
+        private void complete(int index, TargetResult result) {
+            results[index] = result;
+            if (listener != null) {
+                try {
+                    listener.accept(result);
+                } catch (Throwable t) {
+                    ControllerClientLogger.ROOT_LOGGER.debugf(t, "Listener failed for result of %s", result.getTarget());
+                }
+            }
+            // the decrement publishes all results written before it
+            if (remaining.decrementAndGet() == 0) {
+                final Map<String, TargetResult> map = new LinkedHashMap<>();
+                for (TargetResult r : results) {
+                    map.put(r.getTarget(), r);
+                }
+                done.complete(Collections.unmodifiableMap(map));
+            }
+        }
+    }
+
+    /** The result of executing the operation against one target. */
+    public static final class TargetResult {
+
+        private final String target;
+        private final ModelNode response;
+        private final Throwable failure;
+
+        private TargetResult(String target, ModelNode response, Throwable failure) {
+            this.target = target;
+            this.response = response;
+            this.failure = failure;
+        }
+
+        /**
+         * @return the name of the target
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * @return the response of the operation, or {@code null} if the operation could not be executed
+         */
+        public ModelNode getResponse() {
+            return response;
+        }
+
+        /**
+         * @return the reason why the operation could not be executed, or {@code null} if there's a response
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return {@code true} if the target returned a response with a successful outcome
+         */
+        public boolean isSuccess() {
+            return response != null && Operations.isSuccessfulOutcome(response);
+        }
+
+        /**
+         * @return {@code true} if the target didn't respond within the timeout of the fleet
+         */
+        public boolean isTimedOut() {
+            return failure instanceof TimeoutException;
+        }
+
+        @Override
+        public String toString() {
+            return "TargetResult(" + target + ", " + (failure != null ? failure : response) + ")";
+        }
+    }
+
+    public static class Builder {
+
+        private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+        private static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+        private static final long DEFAULT_CANCELLATION_GRACE_MILLIS = 5_000;
+
+        private final Map<String, ModelControllerClientConfiguration> targets = new LinkedHashMap<>();
+        private CallbackHandler handler;
+        private String protocol;
+        private int connectionTimeout;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        private long cancellationGraceMillis = DEFAULT_CANCELLATION_GRACE_MILLIS;
+        private ExecutorService executor;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a target using the security callback handler, protocol and connection timeout of this builder.
+         *
+         * @param name the unique name of the target
+         * @param hostName the remote host
+         * @param port the port
+         * @return a builder to allow continued configuration
+         */
+        public Builder addTarget(String name, String hostName, int port) {
+            targets.put(name, new HostTarget(hostName, port));
+            return this;
+        }
+
+        /**
+         * Adds a target with its own configuration. The fleet takes ownership of the configuration and closes it when the fleet
+         * is closed.
+         *
+         * @param name the unique name of the target
+         * @param configuration the client configuration of the target
+         * @return a builder to allow continued configuration
+         */
+        public Builder addTarget(String name, ModelControllerClientConfiguration configuration) {
+            targets.put(name, configuration);
+            return this;
+        }
+
+        /**
+         * Sets the security callback handler for targets added by host name and port.
+         *
+         * @param handler the callback handler
+         * @return a builder to allow continued configuration
+         */
+        public Builder setHandler(CallbackHandler handler) {
+            this.handler = handler;
+            return this;
+        }
+
+        /**
+         * Sets the protocol for targets added by host name and port.
+         *
+         * @param protocol the protocol
+         * @return a builder to allow continued configuration
+         */
+        public Builder setProtocol(String protocol) {
+            this.protocol = protocol;
+            return this;
+        }
+
+        /**
+         * Sets the connection timeout for targets added by host name and port.
+         *
+         * @param connectionTimeout the connection timeout in milliseconds
+         * @return a builder to allow continued configuration
+         */
+        public Builder setConnectionTimeout(int connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of operations in flight across all targets and executions. Defaults to
+         * {@value #DEFAULT_MAX_IN_FLIGHT}.
+         *
+         * @param maxInFlight the maximum number of operations in flight
+         * @return a builder to allow continued configuration
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("maxInFlight", maxInFlight, 0);
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Sets the time a single target has to respond, measured from the moment the operation is dispatched to the target.
+         * Defaults to {@value #DEFAULT_TIMEOUT_MILLIS} milliseconds.
+         *
+         * @param timeout the timeout, a value {@code <= 0} disables the timeout
+         * @param unit the unit of the timeout
+         * @return a builder to allow continued configuration
+         */
+        public Builder setTimeout(long timeout, TimeUnit unit) {
+            this.timeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the time the server of a target which timed out has to acknowledge the cancellation of its operation. The
+         * operation keeps its slot until then, afterwards the slot is released even if the operation may still be running on
+         * the server. Defaults to {@value #DEFAULT_CANCELLATION_GRACE_MILLIS} milliseconds.
+         *
+         * @param gracePeriod the grace period, a value {@code <= 0} releases the slot as soon as the target timed out
+         * @param unit the unit of the grace period
+         * @return a builder to allow continued configuration
+         */
+        public Builder setCancellationGracePeriod(long gracePeriod, TimeUnit unit) {
+            this.cancellationGraceMillis = unit.toMillis(gracePeriod);
+            return this;
+        }
+
+        /**
+         * Sets the executor used to dispatch operations and by the clients of targets added by host name and port. The executor
+         * is owned by the caller and is not shut down when the fleet is closed.
+         *
+         * @param executor the executor, or {@code null} to create a cached thread pool owned by the fleet
+         * @return a builder to allow continued configuration
+         */
+        public Builder setExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Builds the fleet based on this builder's settings.
+         *
+         * @return the fleet
+         */
+        public ModelControllerClientFleet build() {
+            if (executor != null) {
+                return new ModelControllerClientFleet(this, executor, false);
+            }
+            return new ModelControllerClientFleet(this, Executors.newCachedThreadPool(), true);
+        }
+    }
+
+    /**
+     * A target added by host name and port. The security callback handler, protocol, connection timeout and executor are the
+     * ones of the fleet and are only known once the fleet is built.
+     */
+    private static final class HostTarget implements ModelControllerClientConfiguration {
+
+        private final String hostName;
+        private final int port;
+
+        private HostTarget(String hostName, int port) {
+            this.hostName = hostName;
+            this.port = port;
+        }
+
+        private ModelControllerClientConfiguration configure(ModelControllerClientFleet.Builder builder,
+                ExecutorService executor) {
+            return new ModelControllerClientConfiguration.Builder()
+                    .setHostName(hostName)
+                    .setPort(port)
+                    .setHandler(builder.handler)
+                    .setProtocol(builder.protocol)
+                    .setConnectionTimeout(builder.connectionTimeout)
+                    .setExecutor(executor)
+                    .build();
+        }
+
+        @Override
+        public String getHost() {
+            return hostName;
+        }
+
+        @Override
+        public int getPort() {
+            return port;
+        }
+
+        @Override
+        public String getProtocol() {
+            return null;
+        }
+
+        @Override
+        public int getConnectionTimeout() {
+            return 0;
+        }
+
+        @Override
+        public CallbackHandler getCallbackHandler() {
+            return null;
+        }
+
+        @Override
+        public ExecutorService getExecutor() {
+            return null;
+        }
+
+        @Override
+        public String getClientBindAddress() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
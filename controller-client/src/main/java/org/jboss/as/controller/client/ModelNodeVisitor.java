@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client;
+
+import java.util.List;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
+
+/**
+ * Receives the structure of a DMR tree as a sequence of events. Used to process operation responses while they are decoded,
+ * without building the complete {@link ModelNode} tree first.
+ * <p>
+ * For an object, {@link #startObject(int)} is followed by {@link #key(String)} and the events of the value for each entry and
+ * finally {@link #endObject()}. Lists and properties are reported accordingly. Any other value is reported using
+ * {@link #value(ModelNode)}. All methods do nothing by default.
+ *
+ * @see ModelControllerClient#executeStreaming(Operation, OperationMessageHandler, ModelNodeVisitor)
+ */
+public interface ModelNodeVisitor {
+
+    /**
+     * Called at the start of an object.
+     *
+     * @param size the number of entries of the object
+     */
+    default void startObject(int size) {
+    }
+
+    /**
+     * Called before the value of an object entry.
+     *
+     * @param key the key of the entry
+     */
+    default void key(String key) {
+    }
+
+    /** Called at the end of an object. */
+    default void endObject() {
+    }
+
+    /**
+     * Called at the start of a list.
+     *
+     * @param size the number of elements of the list
+     */
+    default void startList(int size) {
+    }
+
+    /** Called at the end of a list. */
+    default void endList() {
+    }
+
+    /**
+     * Called at the start of a property, before the value of the property.
+     *
+     * @param name the name of the property
+     */
+    default void startProperty(String name) {
+    }
+
+    /** Called at the end of a property. */
+    default void endProperty() {
+    }
+
+    /**
+     * Called for a value which is neither an object, a list nor a property. This includes undefined values.
+     *
+     * @param value the value
+     */
+    default void value(ModelNode value) {
+    }
+
+    /**
+     * Reports the structure of an existing node to a visitor.
+     *
+     * @param node the node
+     * @param visitor the visitor
+     */
+    static void walk(ModelNode node, ModelNodeVisitor visitor) {
+        switch (node.getType()) {
+            case OBJECT:
+                visitor.startObject(node.keys().size());
+                for (String key : node.keys()) {
+                    visitor.key(key);
+                    walk(node.get(key), visitor);
+                }
+                visitor.endObject();
+                break;
+            case LIST:
+                final List<ModelNode> elements = node.asList();
+                visitor.startList(elements.size());
+                for (ModelNode element : elements) {
+                    walk(element, visitor);
+                }
+                visitor.endList();
+                break;
+            case PROPERTY:
+                final Property property = node.asProperty();
+                visitor.startProperty(property.getName());
+                walk(property.getValue(), visitor);
+                visitor.endProperty();
+                break;
+            default:
+                visitor.value(node);
+                break;
+        }
+    }
+}
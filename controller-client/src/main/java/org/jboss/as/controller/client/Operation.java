@@ -62,6 +62,17 @@ public interface Operation extends OperationAttachments {
             return create(operation, Collections.emptyList());
         }
 
+        /**
+         * Prepare an operation for repeated execution. The operation is encoded once and the encoded bytes are reused for each
+         * execution. Later changes to the passed node don't affect the prepared operation.
+         *
+         * @param operation the DMR operation. Cannot be {@code null}
+         * @return the prepared operation. Will not be {@code null}
+         */
+        public static PreparedOperation prepare(final ModelNode operation) {
+            return new PreparedOperation(operation);
+        }
+
         /**
          * Create a simple operation with stream attachments. The streams will not be
          * {@link OperationAttachments#isAutoCloseStreams() automatically closed} when operation execution is completed.
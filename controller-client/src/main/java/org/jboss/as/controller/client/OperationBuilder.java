@@ -15,7 +15,6 @@
  */
 package org.jboss.as.controller.client;
 
-import java.io.BufferedInputStream;
 import java.io.DataOutput;
 import java.io.File;
 import java.io.FilterInputStream;
@@ -108,6 +107,20 @@ public class OperationBuilder {
         return this;
     }
 
+    /**
+     * Associate an input stream with a known size with the operation. The stream is sent to the server as it is read, without
+     * buffering it in memory or on disk. The stream must provide at least {@code size} bytes and is closed once the operation
+     * finished executing.
+     *
+     * @param in the input stream. Cannot be {@code null}
+     * @param size the number of bytes to send
+     * @return a builder than can be used to continue building the operation
+     */
+    public OperationBuilder addInputStream(final InputStream in, final int size) {
+        Assert.checkNotNullParam("in", in);
+        return addInputStream(new InputStreamEntry.StreamingEntry(in, size));
+    }
+
     /**
      * Gets the number of input streams currently associated with the operation,
      *
@@ -173,14 +186,12 @@ public class OperationBuilder {
 
         @Override
         public int initialize() throws IOException {
-            return (int) Files.size(file);
+            return InputStreamEntry.checkSize(Files.size(file));
         }
 
         @Override
         public void copyStream(final DataOutput output) throws IOException {
-            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
-                StreamUtils.copyStream(in, output);
-            }
+            StreamUtils.copyFile(file, output);
         }
 
     }
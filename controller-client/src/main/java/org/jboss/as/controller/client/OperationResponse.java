@@ -18,6 +18,11 @@ package org.jboss.as.controller.client;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.List;
 
@@ -56,10 +61,54 @@ public interface OperationResponse extends Closeable {
         String getMimeType();
 
         /**
-         * Gets the underlying stream.
+         * Gets the underlying stream. The stream is meant to be consumed by one reader, reads from several threads are
+         * serialized and each byte is returned to only one of them.
          */
         InputStream getStream();
 
+        /**
+         * Writes the remaining contents of the stream to a channel. Implementations backed by a remote stream write the data as
+         * it is received, without buffering it in between. The channel is not closed.
+         * <p>
+         * This method blocks until the stream is exhausted. It must not be called by the thread which receives the management
+         * messages, such as a callback of an operation completed by that thread: remote streams fail with an
+         * {@link IllegalStateException} in that case, since the data would never arrive.
+         *
+         * @param target the channel to write to, must be in blocking mode
+         * @return the number of bytes written
+         * @throws IOException if an I/O error occurs
+         */
+        default long transferTo(WritableByteChannel target) throws IOException {
+            final InputStream in = getStream();
+            final byte[] bytes = new byte[8192];
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long count = 0;
+            int read;
+            while ((read = in.read(bytes)) != -1) {
+                buffer.clear();
+                buffer.limit(read);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                count += read;
+            }
+            return count;
+        }
+
+        /**
+         * Writes the remaining contents of the stream to a file. An existing file is overwritten.
+         *
+         * @param target the file to write to
+         * @return the number of bytes written
+         * @throws IOException if an I/O error occurs
+         */
+        default long transferTo(Path target) throws IOException {
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                return transferTo(channel);
+            }
+        }
+
         /**
          * Closes the underlying stream.
          * <p>
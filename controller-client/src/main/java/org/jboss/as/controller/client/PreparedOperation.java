@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.dmr.ModelNode;
+import org.wildfly.common.Assert;
+
+/**
+ * An operation which is encoded once when it's prepared and reused for any number of executions. Executing a prepared operation
+ * writes the cached bytes instead of encoding the DMR tree again, which saves CPU and allocations for operations which are sent
+ * over and over, like the read operations of monitoring pollers.
+ * <p>
+ * Prepared operations are immutable and can be shared between threads and clients. Since stream attachments can only be
+ * consumed once, prepared operations don't have attachments.
+ *
+ * @see Operation.Factory#prepare(ModelNode)
+ */
+public final class PreparedOperation implements Operation {
+
+    private final ModelNode operation;
+    private final byte[] encoded;
+
+    PreparedOperation(final ModelNode operation) {
+        Assert.checkNotNullParam("operation", operation);
+        this.operation = operation.clone();
+        this.operation.protect();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            this.operation.writeExternal(out);
+        } catch (IOException e) {
+            // not thrown by in-memory streams
+            throw new UncheckedIOException(e);
+        }
+        this.encoded = bytes.toByteArray();
+    }
+
+    /**
+     * Writes the encoded operation. The bytes are the same as written by {@link ModelNode#writeExternal(DataOutput)} for the
+     * operation node.
+     *
+     * @param out the output to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeExternal(final DataOutput out) throws IOException {
+        out.write(encoded);
+    }
+
+    /**
+     * @return the number of bytes of the encoded operation
+     */
+    public int getEncodedSize() {
+        return encoded.length;
+    }
+
+    /**
+     * The operation node. The node is protected and can't be modified.
+     *
+     * @return the operation
+     */
+    @Override
+    public ModelNode getOperation() {
+        return operation;
+    }
+
+    @Override
+    public boolean isAutoCloseStreams() {
+        return false;
+    }
+
+    @Override
+    public List<InputStream> getInputStreams() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Deprecated
+    public Operation clone() {
+        return this;
+    }
+
+    @Override
+    @Deprecated
+    public Operation clone(final ModelNode operation) {
+        Assert.checkNotNullParam("operation", operation);
+        return new OperationImpl(operation, null);
+    }
+
+    @Override
+    public void close() {
+        // no attachments
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedOperation(" + operation.toJSONString(true) + ")";
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
+import org.wildfly.common.Assert;
+
+import static org.jboss.as.controller.client.helpers.ClientConstants.RESULT;
+
+/**
+ * Selects the parts of an operation response which are materialized. A projection consists of paths relative to the
+ * {@code result} of the response. Each path selects the node at its end including all of its children. The segments of a path
+ * are object keys, list indices or property names, the {@linkplain #WILDCARD wildcard} matches any of them. Entries of the
+ * response besides the {@code result} like {@code outcome} or {@code failure-description} are always selected.
+ * <p>
+ * For example, the projection {@code data-source/*&#47;jndi-name} applied to a recursive {@code read-resource} of the
+ * datasources subsystem keeps only the JNDI name of each data source. Objects along a path are kept with their selected
+ * entries, lists with their selected elements. Values which are not selected are removed.
+ *
+ * @see ModelControllerClient#executeProjected(Operation, OperationMessageHandler, ResponseProjection)
+ */
+public final class ResponseProjection {
+
+    /** The path segment matching any object key, list index or property name. */
+    public static final String WILDCARD = "*";
+
+    private static final ResponseProjection ALL = new ResponseProjection(true, Collections.emptyMap(), null);
+
+    private final boolean complete;
+    private final Map<String, ResponseProjection> children;
+    private final ResponseProjection wildcard;
+    private final String[] keys;
+    private final byte[][] encodedKeys;
+
+    private ResponseProjection(final boolean complete, final Map<String, ResponseProjection> children,
+            final ResponseProjection wildcard) {
+        this.complete = complete;
+        this.children = children;
+        this.wildcard = wildcard;
+        this.keys = children.keySet().toArray(new String[0]);
+        this.encodedKeys = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            encodedKeys[i] = encode(keys[i]);
+        }
+    }
+
+    /**
+     * Creates a projection from paths using {@code /} to separate the segments.
+     *
+     * @param paths the paths relative to the result of the response
+     * @return the projection
+     */
+    public static ResponseProjection of(final String... paths) {
+        final Builder builder = builder();
+        for (String path : paths) {
+            Assert.checkNotNullParam("path", path);
+            builder.addPath(path.split("/"));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return a builder for projections whose segments may contain {@code /}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return {@code true} if this projection selects the node and all of its children
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the projection for a child of the node selected by this projection.
+     *
+     * @param key the object key, list index or property name of the child
+     * @return the projection of the child, or {@code null} if the child is not selected
+     */
+    public ResponseProjection select(final String key) {
+        if (complete) {
+            return this;
+        }
+        final ResponseProjection child = children.get(key);
+        return child != null ? child : wildcard;
+    }
+
+    /**
+     * @return {@code true} if children without an explicitly selected key are selected by a wildcard
+     */
+    public boolean hasWildcard() {
+        return complete || wildcard != null;
+    }
+
+    /**
+     * Finds the explicitly selected key with the given encoding. Decoders use this to match the keys of the binary DMR format
+     * without decoding them.
+     *
+     * @param encoded the key in the modified UTF-8 encoding of {@link java.io.DataOutput#writeUTF(String)}, without the length
+     * @param length the number of bytes of the encoded key
+     * @return the key, or {@code null} if no key with this encoding is selected explicitly
+     */
+    public String findKey(final byte[] encoded, final int length) {
+        for (int i = 0; i < encodedKeys.length; i++) {
+            final byte[] candidate = encodedKeys[i];
+            if (candidate != null && candidate.length == length && Arrays.equals(candidate, 0, length, encoded, 0, length)) {
+                return keys[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies this projection to a response which has already been read.
+     *
+     * @param response the response
+     * @return a new node containing the selected parts of the response
+     */
+    public ModelNode apply(final ModelNode response) {
+        final ModelNode result = new ModelNode();
+        apply(response, this, result);
+        return result;
+    }
+
+    private static boolean apply(final ModelNode node, final ResponseProjection projection, final ModelNode target) {
+        if (projection.complete) {
+            target.set(node);
+            return true;
+        }
+        switch (node.getType()) {
+            case OBJECT:
+                target.setEmptyObject();
+                for (String key : node.keys()) {
+                    final ResponseProjection child = projection.select(key);
+                    if (child != null && !apply(node.get(key), child, target.get(key))) {
+                        target.remove(key);
+                    }
+                }
+                return true;
+            case LIST:
+                target.setEmptyList();
+                final List<ModelNode> elements = node.asList();
+                int selected = 0;
+                for (int i = 0; i < elements.size(); i++) {
+                    final ResponseProjection child = projection.select(Integer.toString(i));
+                    if (child != null) {
+                        if (apply(elements.get(i), child, target.add())) {
+                            selected++;
+                        } else {
+                            target.remove(selected);
+                        }
+                    }
+                }
+                return true;
+            case PROPERTY:
+                final Property property = node.asProperty();
+                final ResponseProjection child = projection.select(property.getName());
+                final ModelNode value = new ModelNode();
+                if (child != null && apply(property.getValue(), child, value)) {
+                    target.set(property.getName(), value);
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private static byte[] encode(final String key) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(key.length() + 2);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(key);
+        } catch (IOException e) {
+            // the key is too long to be written by the server, so it never matches
+            return null;
+        }
+        return Arrays.copyOfRange(bytes.toByteArray(), 2, bytes.size());
+    }
+
+    @Override
+    public String toString() {
+        final List<String> paths = new ArrayList<>();
+        collectPaths(select(RESULT), "", paths);
+        return "ResponseProjection" + paths;
+    }
+
+    private static void collectPaths(final ResponseProjection projection, final String prefix, final List<String> paths) {
+        if (projection.complete) {
+            paths.add(prefix);
+            return;
+        }
+        for (Map.Entry<String, ResponseProjection> child : projection.children.entrySet()) {
+            collectPaths(child.getValue(), prefix.isEmpty() ? child.getKey() : prefix + "/" + child.getKey(), paths);
+        }
+        if (projection.wildcard != null) {
+            collectPaths(projection.wildcard, prefix.isEmpty() ? WILDCARD : prefix + "/" + WILDCARD, paths);
+        }
+    }
+
+    public static class Builder {
+
+        private final Segment root = new Segment();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a path. Empty segments are ignored, a path without segments selects the complete result.
+         *
+         * @param segments the segments of the path relative to the result of the response
+         * @return this builder
+         */
+        public Builder addPath(final String... segments) {
+            Segment segment = root;
+            for (String name : segments) {
+                Assert.checkNotNullParam("segment", name);
+                if (!name.isEmpty()) {
+                    segment = segment.child(name);
+                }
+            }
+            segment.complete = true;
+            return this;
+        }
+
+        /**
+         * @return the projection
+         */
+        public ResponseProjection build() {
+            // everything besides the result is selected
+            return new ResponseProjection(false, Collections.singletonMap(RESULT, root.toProjection()), ALL);
+        }
+    }
+
+    /**
+     * A mutable node of the path tree used while the projection is built.
+     */
+    private static final class Segment {
+
+        private boolean complete;
+        private final Map<String, Segment> children = new LinkedHashMap<>();
+        private Segment wildcard;
+
+        private Segment child(final String name) {
+            if (WILDCARD.equals(name)) {
+                if (wildcard == null) {
+                    wildcard = new Segment();
+                }
+                return wildcard;
+            }
+            return children.computeIfAbsent(name, n -> new Segment());
+        }
+
+        private void merge(final Segment other) {
+            complete |= other.complete;
+            for (Map.Entry<String, Segment> child : other.children.entrySet()) {
+                child(child.getKey()).merge(child.getValue());
+            }
+            if (other.wildcard != null) {
+                child(WILDCARD).merge(other.wildcard);
+            }
+        }
+
+        private ResponseProjection toProjection() {
+            if (complete) {
+                return ALL;
+            }
+            // The wildcard also applies to the children with an explicit name. Merge it into them, so that a lookup by name
+            // doesn't need to consult the wildcard.
+            final Map<String, ResponseProjection> projections = new LinkedHashMap<>();
+            for (Map.Entry<String, Segment> child : children.entrySet()) {
+                final Segment segment = child.getValue();
+                if (wildcard != null) {
+                    segment.merge(wildcard);
+                }
+                projections.put(child.getKey(), segment.toProjection());
+            }
+            return new ResponseProjection(false, projections, wildcard != null ? wildcard.toProjection() : null);
+        }
+    }
+}
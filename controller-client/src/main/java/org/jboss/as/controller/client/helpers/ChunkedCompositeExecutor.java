@@ -0,0 +1,454 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.helpers;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.logging.ControllerClientLogger;
+import org.jboss.dmr.ModelNode;
+import org.wildfly.common.Assert;
+
+import static org.jboss.as.controller.client.helpers.ClientConstants.CANCELLED;
+import static org.jboss.as.controller.client.helpers.ClientConstants.COMPOSITE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.FAILED;
+import static org.jboss.as.controller.client.helpers.ClientConstants.FAILURE_DESCRIPTION;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OPERATION_HEADERS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OUTCOME;
+import static org.jboss.as.controller.client.helpers.ClientConstants.RESPONSE_HEADERS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.RESULT;
+import static org.jboss.as.controller.client.helpers.ClientConstants.STEPS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.SUCCESS;
+
+/**
+ * Executes large composite operations, like the ones built by {@link Operations.CompositeOperationBuilder}, as several smaller
+ * composites.
+ * <p>
+ * The steps are split into chunks bounded by a maximum number of steps and a maximum encoded size. By default the chunks are
+ * executed one after another, in the order of the steps. Their responses are merged into one composite response whose
+ * {@code step-N} results are in the order of the original steps. Each chunk is executed with the operation headers of the
+ * original composite. The next chunk is sent by the executor of this class, not by the thread which receives the response of
+ * the previous chunk.
+ * <p>
+ * The chunks are independent operations: the steps of a chunk are not rolled back if another chunk fails. Once a chunk failed,
+ * no further chunks are sent and the steps of the chunks which were not sent are reported with the outcome {@code cancelled},
+ * unless {@link Builder#setContinueOnFailure(boolean)} is set. Executing several chunks concurrently is opt-in using
+ * {@link Builder#setMaxConcurrentChunks(int)}. Chunks in flight at the same time are executed in no particular order, so only
+ * use it if no step depends on a step of another chunk. Execute the composite with
+ * {@link ModelControllerClient#execute(Operation)} if the steps must be applied atomically. Composites which fit into one chunk
+ * and composites with attachments are executed as they are.
+ *
+ * <pre>
+ * <code>
+ *
+ *     final Operation composite = builder.build(); // thousands of steps
+ *     final ModelNode response = ChunkedCompositeExecutor.builder(client)
+ *             .setMaxSteps(500)
+ *             .build()
+ *             .execute(composite);
+ * </code>
+ * </pre>
+ */
+public class ChunkedCompositeExecutor {
+
+    /**
+     * Creates a builder for an executor.
+     *
+     * @param client the client executing the chunks
+     * @return the builder
+     */
+    public static Builder builder(final ModelControllerClient client) {
+        Assert.checkNotNullParam("client", client);
+        return new Builder(client);
+    }
+
+    private final ModelControllerClient client;
+    private final int maxSteps;
+    private final long maxBytes;
+    private final int maxConcurrentChunks;
+    private final boolean continueOnFailure;
+    private final Executor executor;
+
+    private ChunkedCompositeExecutor(final Builder builder) {
+        this.client = builder.client;
+        this.maxSteps = builder.maxSteps;
+        this.maxBytes = builder.maxBytes;
+        this.maxConcurrentChunks = builder.maxConcurrentChunks;
+        this.continueOnFailure = builder.continueOnFailure;
+        this.executor = builder.executor;
+    }
+
+    /**
+     * Executes a composite operation in chunks and waits for the merged response.
+     *
+     * @param composite the composite operation
+     * @return the merged response
+     * @throws IOException if an I/O error occurs while executing a chunk
+     */
+    public ModelNode execute(final ModelNode composite) throws IOException {
+        return execute(Operation.Factory.create(composite));
+    }
+
+    /**
+     * Executes a composite operation in chunks and waits for the merged response.
+     *
+     * @param composite the composite operation
+     * @return the merged response
+     * @throws IOException if an I/O error occurs while executing a chunk
+     */
+    public ModelNode execute(final Operation composite) throws IOException {
+        try {
+            return executeAsync(composite).toCompletableFuture().get();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Executes a composite operation in chunks. Cancelling the returned stage cancels the chunks in flight and doesn't start
+     * the remaining chunks.
+     *
+     * @param composite the composite operation
+     * @return the stage completed with the merged response
+     */
+    public CompletionStage<ModelNode> executeAsync(final Operation composite) {
+        Assert.checkNotNullParam("composite", composite);
+        final ModelNode operation = composite.getOperation();
+        if (!COMPOSITE.equals(Operations.getOperationName(operation))) {
+            throw ControllerClientLogger.ROOT_LOGGER.notCompositeOperation(Operations.getOperationName(operation));
+        }
+        if (!composite.getInputStreams().isEmpty()) {
+            // the steps refer to the attachments by index
+            return client.executeAsync(composite, null);
+        }
+        final List<ModelNode> chunks = split(operation);
+        if (chunks.size() < 2) {
+            return client.executeAsync(composite, null);
+        }
+        final Execution execution = new Execution(chunks);
+        execution.start();
+        return execution.result;
+    }
+
+    private List<ModelNode> split(final ModelNode composite) {
+        final List<ModelNode> chunks = new ArrayList<>();
+        if (!composite.hasDefined(STEPS)) {
+            return chunks;
+        }
+        final CountingOutputStream counter = new CountingOutputStream();
+        final DataOutputStream out = new DataOutputStream(counter);
+        ModelNode chunk = null;
+        int steps = 0;
+        long bytes = 0;
+        for (ModelNode step : composite.get(STEPS).asList()) {
+            counter.count = 0;
+            try {
+                step.writeExternal(out);
+                out.flush();
+            } catch (IOException e) {
+                // not thrown by the counter
+                throw new IllegalStateException(e);
+            }
+            final long size = counter.count;
+            if (chunk == null || steps == maxSteps || bytes + size > maxBytes) {
+                chunk = Operations.createOperation(COMPOSITE);
+                chunk.get(STEPS).setEmptyList();
+                if (composite.hasDefined(OPERATION_HEADERS)) {
+                    chunk.get(OPERATION_HEADERS).set(composite.get(OPERATION_HEADERS));
+                }
+                chunks.add(chunk);
+                steps = 0;
+                bytes = 0;
+            }
+            chunk.get(STEPS).add(step);
+            steps++;
+            bytes += size;
+        }
+        return chunks;
+    }
+
+    /**
+     * Merges the responses of the chunks into one composite response. The steps of chunks without a response were not executed.
+     */
+    private static ModelNode merge(final List<ModelNode> chunks, final ModelNode[] responses) {
+        final ModelNode merged = new ModelNode();
+        final ModelNode result = merged.get(RESULT).setEmptyObject();
+        final ModelNode failures = new ModelNode();
+        int step = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            final ModelNode response = responses[i];
+            final int steps = chunks.get(i).get(STEPS).asList().size();
+            if (response == null) {
+                for (int j = 1; j <= steps; j++) {
+                    result.get("step-" + (++step), OUTCOME).set(CANCELLED);
+                }
+                continue;
+            }
+            for (int j = 1; j <= steps; j++) {
+                final ModelNode stepResponse = stepResponse(response, j);
+                final String name = "step-" + (++step);
+                if (!Operations.isSuccessfulOutcome(stepResponse)) {
+                    failures.get(name).set(Operations.getFailureDescription(stepResponse));
+                }
+                result.get(name).set(stepResponse);
+            }
+            if (response.hasDefined(RESPONSE_HEADERS)) {
+                for (String header : response.get(RESPONSE_HEADERS).keys()) {
+                    merged.get(RESPONSE_HEADERS, header).set(response.get(RESPONSE_HEADERS, header));
+                }
+            }
+        }
+        if (failures.isDefined()) {
+            merged.get(OUTCOME).set(FAILED);
+            merged.get(FAILURE_DESCRIPTION).set(failures);
+        } else {
+            merged.get(OUTCOME).set(SUCCESS);
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the response of a step. If the chunk failed before the step was executed, the failure of the chunk is returned.
+     */
+    private static ModelNode stepResponse(final ModelNode response, final int step) {
+        final String name = "step-" + step;
+        if (response.hasDefined(RESULT, name)) {
+            return response.get(RESULT).remove(name);
+        }
+        if (Operations.isSuccessfulOutcome(response)) {
+            final ModelNode succeeded = new ModelNode();
+            succeeded.get(OUTCOME).set(SUCCESS);
+            return succeeded;
+        }
+        final ModelNode failed = new ModelNode();
+        failed.get(OUTCOME).set(FAILED);
+        failed.get(FAILURE_DESCRIPTION).set(Operations.getFailureDescription(response));
+        return failed;
+    }
+
+    /**
+     * The execution of the chunks of one composite.
+     */
+    private final class Execution {
+
+        private final List<ModelNode> chunks;
+        private final ModelNode[] responses;
+        private final CompletableFuture<ModelNode> result;
+        private final List<CompletableFuture<ModelNode>> inFlight;
+        private int next;
+        private int running;
+        private boolean stopped;
+
+        private Execution(final List<ModelNode> chunks) {
+            this.chunks = chunks;
+            this.responses = new ModelNode[chunks.size()];
+            this.result = new CompletableFuture<>();
+            this.inFlight = new ArrayList<>();
+            result.whenComplete((response, failure) -> {
+                if (failure != null) {
+                    cancelInFlight();
+                }
+            });
+        }
+
+        private void start() {
+            for (int i = 0; i < maxConcurrentChunks; i++) {
+                executeNext();
+            }
+        }
+
+        private void executeNext() {
+            final int index;
+            synchronized (this) {
+                if (next == chunks.size() || stopped || result.isDone()) {
+                    return;
+                }
+                index = next++;
+                running++;
+            }
+            final CompletableFuture<ModelNode> future;
+            try {
+                future = client.executeAsync(chunks.get(index)).toCompletableFuture();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            synchronized (this) {
+                inFlight.add(future);
+            }
+            if (result.isDone()) {
+                // completed exceptionally or cancelled while the chunk was sent
+                future.cancel(true);
+                return;
+            }
+            future.whenComplete((response, failure) -> {
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                    return;
+                }
+                final boolean done;
+                synchronized (this) {
+                    inFlight.remove(future);
+                    responses[index] = response;
+                    if (!continueOnFailure && !Operations.isSuccessfulOutcome(response)) {
+                        // the remaining chunks may depend on the failed steps
+                        stopped = true;
+                    }
+                    done = --running == 0 && (next == chunks.size() || stopped);
+                }
+                if (done) {
+                    result.complete(merge(chunks, responses));
+                } else {
+                    // don't send the next chunk from the thread receiving the responses
+                    try {
+                        executor.execute(this::executeNext);
+                    } catch (RejectedExecutionException e) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            });
+        }
+
+        private void cancelInFlight() {
+            final List<CompletableFuture<ModelNode>> cancel;
+            synchronized (this) {
+                cancel = new ArrayList<>(inFlight);
+                inFlight.clear();
+            }
+            for (CompletableFuture<ModelNode> future : cancel) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+
+    public static class Builder {
+
+        private static final int DEFAULT_MAX_STEPS = 500;
+        private static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+        private static final int DEFAULT_MAX_CONCURRENT_CHUNKS = 1;
+
+        private final ModelControllerClient client;
+        private int maxSteps = DEFAULT_MAX_STEPS;
+        private long maxBytes = DEFAULT_MAX_BYTES;
+        private int maxConcurrentChunks = DEFAULT_MAX_CONCURRENT_CHUNKS;
+        private boolean continueOnFailure;
+        private Executor executor = ForkJoinPool.commonPool();
+
+        private Builder(final ModelControllerClient client) {
+            this.client = client;
+        }
+
+        /**
+         * Sets the maximum number of steps of a chunk. Defaults to 500.
+         *
+         * @param maxSteps the maximum number of steps of a chunk
+         * @return this builder
+         */
+        public Builder setMaxSteps(final int maxSteps) {
+            if (maxSteps < 1) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("maxSteps", maxSteps, 0);
+            }
+            this.maxSteps = maxSteps;
+            return this;
+        }
+
+        /**
+         * Sets the maximum encoded size of the steps of a chunk. A step which is larger is executed in a chunk of its own.
+         * Defaults to 1 MiB.
+         *
+         * @param maxBytes the maximum size of a chunk in bytes
+         * @return this builder
+         */
+        public Builder setMaxBytes(final long maxBytes) {
+            Assert.checkMinimumParameter("maxBytes", 1, maxBytes);
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of chunks in flight. Defaults to 1, which executes the chunks one after another, in the order
+         * of the steps. A larger value executes chunks concurrently and in no particular order, it must only be used if the
+         * steps of different chunks don't depend on each other.
+         *
+         * @param maxConcurrentChunks the maximum number of chunks in flight
+         * @return this builder
+         */
+        public Builder setMaxConcurrentChunks(final int maxConcurrentChunks) {
+            if (maxConcurrentChunks < 1) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("maxConcurrentChunks", maxConcurrentChunks, 0);
+            }
+            this.maxConcurrentChunks = maxConcurrentChunks;
+            return this;
+        }
+
+        /**
+         * Sets whether the remaining chunks are sent after a chunk failed. Defaults to {@code false}, which reports the steps
+         * of the chunks not sent yet with the outcome {@code cancelled}. Only set it if the steps of different chunks don't
+         * depend on each other.
+         *
+         * @param continueOnFailure {@code true} to execute all chunks regardless of failed chunks
+         * @return this builder
+         */
+        public Builder setContinueOnFailure(final boolean continueOnFailure) {
+            this.continueOnFailure = continueOnFailure;
+            return this;
+        }
+
+        /**
+         * Sets the executor which sends the next chunk once a chunk completed. Defaults to the common fork join pool.
+         *
+         * @param executor the executor
+         * @return this builder
+         */
+        public Builder setExecutor(final Executor executor) {
+            Assert.checkNotNullParam("executor", executor);
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @return the executor
+         */
+        public ChunkedCompositeExecutor build() {
+            return new ChunkedCompositeExecutor(this);
+        }
+    }
+}
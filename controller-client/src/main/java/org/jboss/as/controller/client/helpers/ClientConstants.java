@@ -28,6 +28,7 @@ public class ClientConstants {
     public static final String ARCHIVE = "archive";
     public static final String ATTACHED_STREAMS = "attached-streams";
     public static final String AUTO_START = "auto-start";
+    public static final String CANCELLED = "cancelled";
     public static final String CHILD_TYPE = "child-type";
     public static final String COMPOSITE = "composite";
     public static final String CONTENT = "content";
@@ -43,6 +44,7 @@ public class ClientConstants {
     public static final String EXPLODE = "explode";
     public static final String EXTENSION = "extension";
     public static final String FILE = "file";
+    public static final String FAILED = "failed";
     public static final String FAILURE_DESCRIPTION = "failure-description";
     public static final String GROUP = "group";
     public static final String HOST = "host";
@@ -21,14 +21,21 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.jboss.as.controller.client.MessageSeverity;
 import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.ModelNodeVisitor;
 import org.jboss.as.controller.client.Operation;
 import org.jboss.as.controller.client.OperationBuilder;
 import org.jboss.as.controller.client.OperationMessageHandler;
 import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.as.controller.client.PreparedOperation;
+import org.jboss.as.controller.client.ResponseProjection;
 import org.jboss.as.protocol.StreamUtils;
 import org.jboss.as.protocol.mgmt.AbstractManagementRequest;
 import org.jboss.as.protocol.mgmt.ActiveOperation;
@@ -58,6 +65,8 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
 
     private static final OperationMessageHandler NO_OP_HANDLER = OperationMessageHandler.DISCARD;
 
+    private final SingleFlight singleFlight = new SingleFlight();
+
     /**
      * Get the mgmt channel association.
      *
@@ -66,25 +75,63 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
      */
     protected abstract ManagementChannelAssociation getChannelAssociation() throws IOException;
 
+    /**
+     * Get the size of the buffer used for each attached response stream.
+     *
+     * @return the buffer size in bytes
+     */
+    protected int getResponseStreamBufferSize() {
+        return Pipe.DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * Get the number of attached response streams which are read ahead as soon as the response arrives.
+     *
+     * @return the number of streams to read ahead, {@code 0} to read streams lazily
+     */
+    protected int getResponseStreamReadAhead() {
+        return 0;
+    }
+
+    /**
+     * Get the executor which completes the stages returned by the asynchronous execute methods. The stages must not be
+     * completed by the thread which reads the response from the channel: the next message of the channel is only received once
+     * that thread returns, so a dependent stage blocking on the same channel would deadlock it.
+     *
+     * @return the executor
+     */
+    protected Executor getExecutor() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Whether identical read-only operations which are in flight at the same time share one request.
+     *
+     * @return {@code true} to coalesce read-only operations
+     */
+    protected boolean isCoalesceReadOperations() {
+        return false;
+    }
+
     @Override
     public ModelNode execute(final ModelNode operation) throws IOException {
-        return responseNodeOnly(executeForResult(OperationExecutionContext.create(operation)));
+        return executeForNode(OperationExecutionContext.create(operation));
     }
 
     @Override
     public ModelNode execute(final Operation operation) throws IOException {
-        return responseNodeOnly(executeForResult(OperationExecutionContext.create(operation)));
+        return executeForNode(OperationExecutionContext.create(operation));
     }
 
     @Override
     public ModelNode execute(final ModelNode operation, final OperationMessageHandler messageHandler)
             throws IOException {
-        return responseNodeOnly(executeForResult(OperationExecutionContext.create(operation, messageHandler)));
+        return executeForNode(OperationExecutionContext.create(operation, messageHandler));
     }
 
     @Override
     public ModelNode execute(Operation operation, OperationMessageHandler messageHandler) throws IOException {
-        return responseNodeOnly(executeForResult(OperationExecutionContext.create(operation, messageHandler)));
+        return executeForNode(OperationExecutionContext.create(operation, messageHandler));
     }
 
     @Override
@@ -93,6 +140,64 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
         return executeForResult(OperationExecutionContext.create(operation, messageHandler));
     }
 
+    @Override
+    public ModelNode executeProjected(final Operation operation, final OperationMessageHandler messageHandler,
+            final ResponseProjection projection) throws IOException {
+        return responseNodeOnly(executeForResult(OperationExecutionContext.create(operation, messageHandler, projection)));
+    }
+
+    @Override
+    public void executeStreaming(final Operation operation, final OperationMessageHandler messageHandler,
+            final ModelNodeVisitor visitor) throws IOException {
+        try {
+            executeStreaming(OperationExecutionContext.create(operation, messageHandler), visitor).get();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public CompletionStage<ModelNode> executeAsync(final Operation operation,
+            final OperationMessageHandler messageHandler) {
+        final OperationExecutionContext executionContext = OperationExecutionContext.create(operation, messageHandler);
+        final OperationKey key = isCoalesceReadOperations() ? SingleFlight.keyOf(operation, messageHandler) : null;
+        if (key != null) {
+            return singleFlight.execute(key, () -> executeForNodeAsync(executionContext));
+        }
+        try {
+            return executeForNodeAsync(executionContext);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletionStage<OperationResponse> executeOperationAsync(final Operation operation,
+            final OperationMessageHandler messageHandler) {
+        try {
+            return completeOnExecutor(
+                    execute(OperationExecutionContext.create(operation, messageHandler)).toCompletableFuture());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Executes the operation and returns the future of the request itself. Unlike the stage returned by
+     * {@link #executeAsync(Operation, OperationMessageHandler)}, the request is never shared with other callers, and once
+     * cancelled the future is only done after the server has acknowledged the cancellation. Listeners of the future are called
+     * by the thread which reads the response from the channel and must not block.
+     *
+     * @param operation the operation to execute
+     * @param messageHandler the message handler to use for operation progress reporting
+     * @return the future result of the operation
+     * @throws IOException if the request could not be sent
+     */
+    public AsyncFuture<ModelNode> executeRequestAsync(final Operation operation, final OperationMessageHandler messageHandler)
+            throws IOException {
+        return new ConvertingDelegatingAsyncFuture(execute(OperationExecutionContext.create(operation, messageHandler)));
+    }
+
     @Override
     public ManagementRequestHandler<?, ?> resolveHandler(RequestHandlerChain handlers, ManagementRequestHeader header) {
         final byte operationType = header.getOperationId();
@@ -119,6 +224,61 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
         }
     }
 
+    /**
+     * Execute for the response node. Identical read-only operations share one request if coalescing is enabled.
+     *
+     * @param executionContext the execution context
+     * @return the response node
+     * @throws IOException for any error
+     */
+    private ModelNode executeForNode(final OperationExecutionContext executionContext) throws IOException {
+        final OperationKey key = isCoalesceReadOperations()
+                ? SingleFlight.keyOf(executionContext.operation, executionContext.handler)
+                : null;
+        if (key == null) {
+            return responseNodeOnly(executeForResult(executionContext));
+        }
+        try {
+            return singleFlight.execute(key, () -> executeForNodeAsync(executionContext)).get();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private CompletableFuture<ModelNode> executeForNodeAsync(final OperationExecutionContext executionContext)
+            throws IOException {
+        return completeOnExecutor(new ConvertingDelegatingAsyncFuture(execute(executionContext)).toCompletableFuture());
+    }
+
+    /**
+     * Returns a stage which is completed with the outcome of the source on the {@linkplain #getExecutor() executor}. Cancelling
+     * the returned stage cancels the source and thus the operation.
+     */
+    private <T> CompletableFuture<T> completeOnExecutor(final CompletableFuture<T> source) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        source.whenComplete((value, failure) -> {
+            final Runnable completion = () -> {
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(value);
+                }
+            };
+            try {
+                getExecutor().execute(completion);
+            } catch (RejectedExecutionException e) {
+                // the executor was shut down, don't leave the caller waiting forever
+                completion.run();
+            }
+        });
+        result.whenComplete((value, failure) -> {
+            if (result.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return result;
+    }
+
     /** Extracts the response node from an OperationResponse and returns it after first closing the OperationResponse */
     private static ModelNode responseNodeOnly(OperationResponse or) throws IOException {
         ModelNode result = or.getResponseNode();
@@ -133,51 +293,90 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
      * @return the future result
      * @throws IOException
      */
-    private Future<OperationResponse> execute(final OperationExecutionContext executionContext)
+    private AsyncFuture<OperationResponse> execute(final OperationExecutionContext executionContext)
             throws IOException {
-        return executeRequest(new AbstractManagementRequest<OperationResponse, OperationExecutionContext>() {
+        return executeRequest(new ExecuteRequest<OperationResponse>() {
 
             @Override
-            public byte getOperationType() {
-                return ModelControllerProtocol.EXECUTE_ASYNC_CLIENT_REQUEST;
-            }
-
-            @Override
-            protected void sendRequest(final ActiveOperation.ResultHandler<OperationResponse> resultHandler,
-                    final ManagementRequestContext<OperationExecutionContext> context,
-                    final FlushableDataOutput output) throws IOException {
-                // Write the operation
-                final List<InputStream> streams = executionContext.operation.getInputStreams();
-                final ModelNode operation = executionContext.operation.getOperation();
-                int inputStreamLength = 0;
-                if (streams != null) {
-                    inputStreamLength = streams.size();
+            public void handleRequest(final DataInput input,
+                    final ActiveOperation.ResultHandler<OperationResponse> resultHandler,
+                    final ManagementRequestContext<OperationExecutionContext> context) throws IOException {
+                expectHeader(input, ModelControllerProtocol.PARAM_RESPONSE);
+                final ModelNode node;
+                if (executionContext.projection != null) {
+                    node = ModelNodeDecoder.decode(input, executionContext.projection);
+                } else {
+                    node = new ModelNode();
+                    node.readExternal(input);
                 }
-                output.write(ModelControllerProtocol.PARAM_OPERATION);
-                operation.writeExternal(output);
-                output.write(ModelControllerProtocol.PARAM_INPUTSTREAMS_LENGTH);
-                output.writeInt(inputStreamLength);
+                resultHandler.done(getOperationResponse(node, context.getOperationId()));
+                expectHeader(input, ManagementProtocol.RESPONSE_END);
             }
+        }, executionContext, executionContext);
+    }
+
+    /**
+     * Execute a request and report the response to a visitor while it's decoded.
+     *
+     * @param executionContext the execution context
+     * @param visitor the visitor
+     * @return the future result
+     * @throws IOException
+     */
+    private AsyncFuture<Void> executeStreaming(final OperationExecutionContext executionContext,
+            final ModelNodeVisitor visitor) throws IOException {
+        return executeRequest(new ExecuteRequest<Void>() {
 
             @Override
-            public void handleRequest(final DataInput input,
-                    final ActiveOperation.ResultHandler<OperationResponse> resultHandler,
+            public void handleRequest(final DataInput input, final ActiveOperation.ResultHandler<Void> resultHandler,
                     final ManagementRequestContext<OperationExecutionContext> context) throws IOException {
                 expectHeader(input, ModelControllerProtocol.PARAM_RESPONSE);
-                final ModelNode node = new ModelNode();
-                node.readExternal(input);
-                resultHandler.done(getOperationResponse(node, context.getOperationId()));
+                ModelNodeDecoder.decode(input, visitor);
                 expectHeader(input, ManagementProtocol.RESPONSE_END);
+                resultHandler.done(null);
             }
-        }, executionContext);
+        }, executionContext, executionContext.callback());
+    }
+
+    private <T> AsyncFuture<T> executeRequest(final ManagementRequest<T, OperationExecutionContext> request,
+            final OperationExecutionContext attachment, final ActiveOperation.CompletedCallback<T> callback)
+            throws IOException {
+        final ActiveOperation<T, OperationExecutionContext> support = getChannelAssociation()
+                .executeRequest(request, attachment, callback);
+        return new DelegatingCancellableAsyncFuture<>(support.getResult(), support.getOperationId());
     }
 
-    private Future<OperationResponse> executeRequest(
-            final ManagementRequest<OperationResponse, OperationExecutionContext> request,
-            final OperationExecutionContext attachment) throws IOException {
-        final ActiveOperation<OperationResponse, OperationExecutionContext> support = getChannelAssociation()
-                .executeRequest(request, attachment, attachment);
-        return new DelegatingCancellableAsyncFuture(support.getResult(), support.getOperationId());
+    /**
+     * Sends the operation and the number of its attachments to the server.
+     */
+    private abstract static class ExecuteRequest<T> extends AbstractManagementRequest<T, OperationExecutionContext> {
+
+        @Override
+        public byte getOperationType() {
+            return ModelControllerProtocol.EXECUTE_ASYNC_CLIENT_REQUEST;
+        }
+
+        @Override
+        protected void sendRequest(final ActiveOperation.ResultHandler<T> resultHandler,
+                final ManagementRequestContext<OperationExecutionContext> context,
+                final FlushableDataOutput output) throws IOException {
+            // Write the operation
+            final Operation operation = context.getAttachment().operation;
+            final List<InputStream> streams = operation.getInputStreams();
+            int inputStreamLength = 0;
+            if (streams != null) {
+                inputStreamLength = streams.size();
+            }
+            output.write(ModelControllerProtocol.PARAM_OPERATION);
+            if (operation instanceof PreparedOperation) {
+                // Reuse the bytes encoded when the operation was prepared
+                ((PreparedOperation) operation).writeExternal(output);
+            } else {
+                operation.getOperation().writeExternal(output);
+            }
+            output.write(ModelControllerProtocol.PARAM_INPUTSTREAMS_LENGTH);
+            output.writeInt(inputStreamLength);
+        }
     }
 
     private static class ReadAttachmentInputStreamRequestHandler
@@ -247,11 +446,18 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
 
         private final Operation operation;
         private final OperationMessageHandler handler;
+        private final ResponseProjection projection;
         private final List<InputStreamEntry> streams;
 
         OperationExecutionContext(final Operation operation, final OperationMessageHandler handler) {
+            this(operation, handler, null);
+        }
+
+        OperationExecutionContext(final Operation operation, final OperationMessageHandler handler,
+                final ResponseProjection projection) {
             this.operation = operation;
             this.handler = handler != null ? handler : NO_OP_HANDLER;
+            this.projection = projection;
             this.streams = createStreamEntries(operation);
         }
 
@@ -268,6 +474,28 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
             return entry;
         }
 
+        /**
+         * Returns a callback closing the attachments for requests which don't produce an {@code OperationResponse}.
+         */
+        <T> ActiveOperation.CompletedCallback<T> callback() {
+            return new ActiveOperation.CompletedCallback<T>() {
+                @Override
+                public void completed(T result) {
+                    closeAttachments();
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    closeAttachments();
+                }
+
+                @Override
+                public void cancelled() {
+                    closeAttachments();
+                }
+            };
+        }
+
         @Override
         public void completed(OperationResponse result) {
             closeAttachments();
@@ -308,17 +536,22 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
             return new OperationExecutionContext(operation, handler);
         }
 
+        static OperationExecutionContext create(final Operation operation, final OperationMessageHandler handler,
+                final ResponseProjection projection) {
+            return new OperationExecutionContext(operation, handler, projection);
+        }
+
     }
 
     /**
      * Wraps the request execution AsyncFuture in an AsyncFuture impl that handles cancellation by sending a cancellation
      * request to the remote side.
      */
-    private class DelegatingCancellableAsyncFuture extends AbstractDelegatingAsyncFuture<OperationResponse> {
+    private class DelegatingCancellableAsyncFuture<T> extends AbstractDelegatingAsyncFuture<T> {
 
         private final int batchId;
 
-        private DelegatingCancellableAsyncFuture(final AsyncFuture<OperationResponse> delegate, final int batchId) {
+        private DelegatingCancellableAsyncFuture(final AsyncFuture<T> delegate, final int batchId) {
             super(delegate);
             this.batchId = batchId;
         }
@@ -369,8 +602,7 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
             if (stream instanceof InputStreamEntry) {
                 entries.add((InputStreamEntry) stream);
             } else {
-                // TODO don't copy everything to memory... perhaps use InputStreamEntry.CachingStreamEntry
-                entries.add(new InputStreamEntry.InMemoryEntry(stream, autoClose));
+                entries.add(new InputStreamEntry.SpillingStreamEntry(stream, autoClose));
             }
         }
         return entries;
@@ -383,7 +615,8 @@ public abstract class AbstractModelControllerClient implements ModelControllerCl
                         ? simpleResponse.get(RESPONSE_HEADERS, ATTACHED_STREAMS)
                         : null;
         if (streamHeader != null && streamHeader.asInt() > 0) {
-            return OperationResponseProxy.create(simpleResponse, getChannelAssociation(), batchId, streamHeader);
+            return OperationResponseProxy.create(simpleResponse, getChannelAssociation(), batchId, streamHeader,
+                    getResponseStreamBufferSize(), getResponseStreamReadAhead());
         } else {
             return OperationResponse.Factory.createSimple(simpleResponse);
         }
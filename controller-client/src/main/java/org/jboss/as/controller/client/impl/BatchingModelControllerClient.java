@@ -0,0 +1,398 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.ModelNodeVisitor;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.as.controller.client.ResponseProjection;
+import org.jboss.as.controller.client.helpers.Operations;
+import org.jboss.as.controller.client.logging.ControllerClientLogger;
+import org.jboss.dmr.ModelNode;
+import org.wildfly.common.Assert;
+
+import static org.jboss.as.controller.client.helpers.ClientConstants.COMPOSITE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.FAILURE_DESCRIPTION;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OPERATION_HEADERS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.RESULT;
+import static org.jboss.as.controller.client.helpers.ClientConstants.ROLLBACK_ON_RUNTIME_FAILURE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.STEPS;
+
+/**
+ * {@link ModelControllerClient} which sends independent read-only operations submitted within a short window as one
+ * {@code composite} operation.
+ * <p>
+ * The first operation of a batch opens the window. The batch is sent when the window closes or when it reaches the maximum
+ * batch size, whichever comes first. The composite is executed with {@code rollback-on-runtime-failure=false} and the
+ * {@code step-N} response of the composite is returned to the caller of the N-th operation. A batch with only one operation is
+ * sent as is.
+ * <p>
+ * A step failing in the model stage, for instance because its resource doesn't exist, fails and rolls back the whole composite.
+ * If the composite fails, only the steps which report a failure of their own receive their step response. All other steps were
+ * rolled back or not executed because of another step, they are executed again on their own and receive the response of that
+ * execution. A batched operation therefore sees the same outcome as an unbatched one, at the price of a second round trip for
+ * the operations batched together with a failing one. If the composite can't be executed at all, for instance because the
+ * connection is lost, all operations of the batch fail.
+ * <p>
+ * Only read-only operations returning a {@link ModelNode} are batched, and only if they have no attachments, no operation
+ * headers and no message handler. All other operations are executed right away, modifying operations in particular, as they
+ * could be rolled back by the failure of an unrelated step. Cancelling the future of a batched operation removes it from the
+ * batch as long as the batch has not been sent. Closing this client closes the delegate.
+ */
+public class BatchingModelControllerClient implements ModelControllerClient {
+
+    private static final AtomicInteger schedulerCount = new AtomicInteger();
+
+    /**
+     * Creates a builder for a batching client.
+     *
+     * @param delegate the client executing the batches
+     * @return the builder
+     */
+    public static Builder builder(final ModelControllerClient delegate) {
+        Assert.checkNotNullParam("delegate", delegate);
+        return new Builder(delegate);
+    }
+
+    private final ModelControllerClient delegate;
+    private final long window;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong batches;
+    private final AtomicLong batchedOperations;
+    // guarded by this
+    private List<Pending> pending;
+    private ScheduledFuture<?> flush;
+    private boolean closed;
+
+    private BatchingModelControllerClient(final Builder builder) {
+        this.delegate = builder.delegate;
+        this.window = builder.window;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "management-client-batch-" + schedulerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batches = new AtomicLong();
+        this.batchedOperations = new AtomicLong();
+        this.pending = new ArrayList<>();
+    }
+
+    @Override
+    public ModelNode execute(final Operation operation, final OperationMessageHandler messageHandler) throws IOException {
+        if (!isBatchable(operation, messageHandler)) {
+            return delegate.execute(operation, messageHandler);
+        }
+        try {
+            return submit(operation.getOperation()).get();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public OperationResponse executeOperation(final Operation operation, final OperationMessageHandler messageHandler)
+            throws IOException {
+        return delegate.executeOperation(operation, messageHandler);
+    }
+
+    @Override
+    public ModelNode executeProjected(final Operation operation, final OperationMessageHandler messageHandler,
+            final ResponseProjection projection) throws IOException {
+        return delegate.executeProjected(operation, messageHandler, projection);
+    }
+
+    @Override
+    public void executeStreaming(final Operation operation, final OperationMessageHandler messageHandler,
+            final ModelNodeVisitor visitor) throws IOException {
+        delegate.executeStreaming(operation, messageHandler, visitor);
+    }
+
+    @Override
+    public CompletionStage<ModelNode> executeAsync(final Operation operation,
+            final OperationMessageHandler messageHandler) {
+        if (!isBatchable(operation, messageHandler)) {
+            return delegate.executeAsync(operation, messageHandler);
+        }
+        return submit(operation.getOperation());
+    }
+
+    @Override
+    public CompletionStage<OperationResponse> executeOperationAsync(final Operation operation,
+            final OperationMessageHandler messageHandler) {
+        return delegate.executeOperationAsync(operation, messageHandler);
+    }
+
+    /**
+     * Returns a snapshot of the batching statistics.
+     *
+     * @return the statistics
+     */
+    public BatchStatistics getStatistics() {
+        return new BatchStatistics(batches.get(), batchedOperations.get());
+    }
+
+    @Override
+    public void close() throws IOException {
+        final List<Pending> batch;
+        synchronized (this) {
+            closed = true;
+            batch = takeBatch();
+        }
+        for (Pending operation : batch) {
+            operation.result.completeExceptionally(
+                    ControllerClientLogger.ROOT_LOGGER.objectIsClosed(ModelControllerClient.class.getSimpleName()));
+        }
+        scheduler.shutdownNow();
+        delegate.close();
+    }
+
+    private static boolean isBatchable(final Operation operation, final OperationMessageHandler messageHandler) {
+        if (messageHandler != null && messageHandler != OperationMessageHandler.DISCARD) {
+            return false;
+        }
+        if (!operation.getInputStreams().isEmpty()) {
+            return false;
+        }
+        final ModelNode node = operation.getOperation();
+        return !node.hasDefined(OPERATION_HEADERS) && !COMPOSITE.equals(Operations.getOperationName(node))
+                && OperationKey.isReadOnly(node, OperationKey.READ_ONLY_OPERATIONS);
+    }
+
+    private CompletableFuture<ModelNode> submit(final ModelNode operation) {
+        final Pending submitted = new Pending(operation);
+        List<Pending> batch = null;
+        synchronized (this) {
+            if (closed) {
+                submitted.result.completeExceptionally(
+                        ControllerClientLogger.ROOT_LOGGER.objectIsClosed(ModelControllerClient.class.getSimpleName()));
+                return submitted.result;
+            }
+            pending.add(submitted);
+            if (pending.size() >= maxBatchSize) {
+                batch = takeBatch();
+            } else if (flush == null) {
+                flush = scheduler.schedule(this::flush, window, TimeUnit.NANOSECONDS);
+            }
+        }
+        submitted.result.whenComplete((response, failure) -> {
+            if (submitted.result.isCancelled()) {
+                withdraw(submitted);
+            }
+        });
+        if (batch != null) {
+            send(batch);
+        }
+        return submitted.result;
+    }
+
+    private void flush() {
+        final List<Pending> batch;
+        synchronized (this) {
+            batch = takeBatch();
+        }
+        send(batch);
+    }
+
+    /** Must be called while holding the lock. */
+    private List<Pending> takeBatch() {
+        final List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if (flush != null) {
+            flush.cancel(false);
+            flush = null;
+        }
+        return batch;
+    }
+
+    private synchronized void withdraw(final Pending operation) {
+        // the operation is only removed if the batch has not been sent
+        pending.remove(operation);
+    }
+
+    private void send(final List<Pending> batch) {
+        batch.removeIf(operation -> operation.result.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        batches.incrementAndGet();
+        batchedOperations.addAndGet(batch.size());
+        if (batch.size() == 1) {
+            executeAlone(batch.get(0));
+            return;
+        }
+        final ModelNode composite = Operations.createOperation(COMPOSITE);
+        final ModelNode steps = composite.get(STEPS).setEmptyList();
+        for (Pending operation : batch) {
+            steps.add(operation.operation);
+        }
+        composite.get(OPERATION_HEADERS, ROLLBACK_ON_RUNTIME_FAILURE).set(false);
+        delegate.executeAsync(composite).whenComplete((response, failure) -> {
+            final boolean compositeFailed = failure == null && !Operations.isSuccessfulOutcome(response);
+            for (int i = 0; i < batch.size(); i++) {
+                final Pending operation = batch.get(i);
+                if (failure != null) {
+                    operation.result.completeExceptionally(failure);
+                    continue;
+                }
+                final ModelNode step = stepResponse(response, i + 1);
+                if (step == null || (compositeFailed && !step.hasDefined(FAILURE_DESCRIPTION))) {
+                    // rolled back or skipped because of another step
+                    executeAlone(operation);
+                } else {
+                    operation.result.complete(step);
+                }
+            }
+        });
+    }
+
+    private void executeAlone(final Pending operation) {
+        if (operation.result.isDone()) {
+            return;
+        }
+        delegate.executeAsync(operation.operation).whenComplete((response, failure) -> {
+            if (failure != null) {
+                operation.result.completeExceptionally(failure);
+            } else {
+                operation.result.complete(response);
+            }
+        });
+    }
+
+    /**
+     * Returns the response of a step, or {@code null} if the composite has no response for the step.
+     */
+    private static ModelNode stepResponse(final ModelNode response, final int step) {
+        final String name = "step-" + step;
+        if (response.hasDefined(RESULT, name)) {
+            return response.get(RESULT).remove(name);
+        }
+        return null;
+    }
+
+    private static final class Pending {
+
+        private final ModelNode operation;
+        private final CompletableFuture<ModelNode> result;
+
+        private Pending(final ModelNode operation) {
+            this.operation = operation;
+            this.result = new CompletableFuture<>();
+        }
+    }
+
+    /** The utilization of the batches. */
+    public static final class BatchStatistics {
+
+        private final long batches;
+        private final long operations;
+
+        private BatchStatistics(long batches, long operations) {
+            this.batches = batches;
+            this.operations = operations;
+        }
+
+        /**
+         * @return the number of batches sent
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * @return the number of operations sent in batches
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * @return the average number of operations per batch
+         */
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0 : (double) operations / batches;
+        }
+
+        @Override
+        public String toString() {
+            return "BatchStatistics(batches=" + batches + ", operations=" + operations + ")";
+        }
+    }
+
+    public static class Builder {
+
+        private static final long DEFAULT_WINDOW_MILLIS = 2;
+        private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+        private final ModelControllerClient delegate;
+        private long window = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS);
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+        private Builder(final ModelControllerClient delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Sets how long operations are collected after the first operation of a batch has been submitted. Defaults to two
+         * milliseconds.
+         *
+         * @param window the window
+         * @param unit the unit of the window
+         * @return this builder
+         */
+        public Builder setWindow(final long window, final TimeUnit unit) {
+            Assert.checkMinimumParameter("window", 0, window);
+            this.window = unit.toNanos(window);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of operations of a batch. A full batch is sent before its window closes. Defaults to 100.
+         *
+         * @param maxBatchSize the maximum number of operations of a batch
+         * @return this builder
+         */
+        public Builder setMaxBatchSize(final int maxBatchSize) {
+            if (maxBatchSize < 1) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("maxBatchSize", maxBatchSize, 0);
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @return the batching client
+         */
+        public BatchingModelControllerClient build() {
+            return new BatchingModelControllerClient(this);
+        }
+    }
+}
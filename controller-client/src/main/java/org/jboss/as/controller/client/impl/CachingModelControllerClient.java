@@ -0,0 +1,487 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.ModelNodeVisitor;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.as.controller.client.ResponseProjection;
+import org.jboss.as.controller.client.helpers.Operations;
+import org.jboss.as.controller.client.logging.ControllerClientLogger;
+import org.jboss.dmr.ModelNode;
+import org.wildfly.common.Assert;
+
+import static org.jboss.as.controller.client.helpers.ClientConstants.COMPOSITE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OP;
+import static org.jboss.as.controller.client.helpers.ClientConstants.STEPS;
+
+/**
+ * {@link ModelControllerClient} which serves read-only operations from a bounded cache.
+ * <p>
+ * Operations like {@code read-attribute} or {@code read-resource} are identified by their name, canonical address and
+ * parameters. Successful responses are cached for the time to live of the operation. When the cache is full, the least recently
+ * used entry is evicted. Any other operation invalidates the cached responses for addresses which overlap with its address,
+ * i.e. for the address itself, its parents and its children. Composite operations invalidate the addresses of their modifying
+ * steps.
+ * <p>
+ * Only operations returning a {@link ModelNode} are cached. Operations with attachments and operations returning an
+ * {@link OperationResponse}, a {@linkplain ResponseProjection projection} or using a {@linkplain ModelNodeVisitor visitor} are
+ * always executed, but still invalidate the cache if they modify the model. Closing this client closes the delegate.
+ */
+public class CachingModelControllerClient implements ModelControllerClient {
+
+    /**
+     * Creates a builder for a caching client.
+     *
+     * @param delegate the client executing the operations which are not cached
+     * @return the builder
+     */
+    public static Builder builder(final ModelControllerClient delegate) {
+        Assert.checkNotNullParam("delegate", delegate);
+        return new Builder(delegate);
+    }
+
+    private final ModelControllerClient delegate;
+    private final long defaultTimeToLive;
+    private final Map<String, Long> timeToLive;
+    private final Set<String> readOnlyOperations;
+    private final int maxEntries;
+    private final LinkedHashMap<OperationKey, Entry> entries;
+    /** incremented by each modifying operation, responses read across a modification are not cached */
+    private final AtomicLong modifications;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final AtomicLong invalidations;
+
+    private CachingModelControllerClient(final Builder builder) {
+        this.delegate = builder.delegate;
+        this.defaultTimeToLive = builder.defaultTimeToLive;
+        this.timeToLive = new HashMap<>(builder.timeToLive);
+        this.readOnlyOperations = new HashSet<>(OperationKey.READ_ONLY_OPERATIONS);
+        for (Map.Entry<String, Long> ttl : timeToLive.entrySet()) {
+            if (ttl.getValue() > 0) {
+                readOnlyOperations.add(ttl.getKey());
+            }
+        }
+        this.maxEntries = builder.maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.modifications = new AtomicLong();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+        this.invalidations = new AtomicLong();
+    }
+
+    @Override
+    public ModelNode execute(final Operation operation, final OperationMessageHandler messageHandler) throws IOException {
+        final OperationKey key = cacheKey(operation);
+        if (key == null) {
+            final List<String[]> modified = modifiedAddresses(operation);
+            try {
+                return delegate.execute(operation, messageHandler);
+            } finally {
+                invalidate(modified);
+            }
+        }
+        final ModelNode cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        final long modification = modifications.get();
+        final ModelNode response = delegate.execute(operation, messageHandler);
+        store(key, timeToLive(operation.getOperation()), response, modification);
+        return response;
+    }
+
+    @Override
+    public OperationResponse executeOperation(final Operation operation, final OperationMessageHandler messageHandler)
+            throws IOException {
+        final List<String[]> modified = modifiedAddresses(operation);
+        try {
+            return delegate.executeOperation(operation, messageHandler);
+        } finally {
+            invalidate(modified);
+        }
+    }
+
+    @Override
+    public ModelNode executeProjected(final Operation operation, final OperationMessageHandler messageHandler,
+            final ResponseProjection projection) throws IOException {
+        final List<String[]> modified = modifiedAddresses(operation);
+        try {
+            return delegate.executeProjected(operation, messageHandler, projection);
+        } finally {
+            invalidate(modified);
+        }
+    }
+
+    @Override
+    public void executeStreaming(final Operation operation, final OperationMessageHandler messageHandler,
+            final ModelNodeVisitor visitor) throws IOException {
+        final List<String[]> modified = modifiedAddresses(operation);
+        try {
+            delegate.executeStreaming(operation, messageHandler, visitor);
+        } finally {
+            invalidate(modified);
+        }
+    }
+
+    @Override
+    public CompletionStage<ModelNode> executeAsync(final Operation operation,
+            final OperationMessageHandler messageHandler) {
+        final OperationKey key = cacheKey(operation);
+        if (key == null) {
+            final List<String[]> modified = modifiedAddresses(operation);
+            final CompletionStage<ModelNode> stage = delegate.executeAsync(operation, messageHandler);
+            // return the original stage, so that cancelling it cancels the operation
+            stage.whenComplete((response, failure) -> invalidate(modified));
+            return stage;
+        }
+        final ModelNode cached = lookup(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        final long modification = modifications.get();
+        final long timeToLive = timeToLive(operation.getOperation());
+        final CompletableFuture<ModelNode> source = delegate.executeAsync(operation, messageHandler).toCompletableFuture();
+        final CompletableFuture<ModelNode> result = new CompletableFuture<>();
+        source.whenComplete((response, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                // store a copy before the caller gets the chance to modify the response
+                store(key, timeToLive, response, modification);
+                result.complete(response);
+            }
+        });
+        result.whenComplete((response, failure) -> {
+            if (result.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CompletionStage<OperationResponse> executeOperationAsync(final Operation operation,
+            final OperationMessageHandler messageHandler) {
+        final List<String[]> modified = modifiedAddresses(operation);
+        final CompletionStage<OperationResponse> stage = delegate.executeOperationAsync(operation, messageHandler);
+        stage.whenComplete((response, failure) -> invalidate(modified));
+        return stage;
+    }
+
+    /**
+     * Removes all cached responses.
+     */
+    public void invalidateAll() {
+        modifications.incrementAndGet();
+        synchronized (entries) {
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     *
+     * @return the statistics
+     */
+    public CacheStatistics getStatistics() {
+        final int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStatistics(hits.get(), misses.get(), evictions.get(), invalidations.get(), size);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (entries) {
+            entries.clear();
+        }
+        delegate.close();
+    }
+
+    /**
+     * @return the key if the operation can be cached, {@code null} otherwise. Only operations which don't modify the model are
+     *         cached, a composite is cached only if all of its steps are read-only.
+     */
+    private OperationKey cacheKey(final Operation operation) {
+        if (!operation.getInputStreams().isEmpty()) {
+            return null;
+        }
+        final ModelNode node = operation.getOperation();
+        if (!OperationKey.isReadOnly(node, readOnlyOperations)) {
+            return null;
+        }
+        final OperationKey key = OperationKey.of(node);
+        if (key == null || timeToLive(node) <= 0) {
+            return null;
+        }
+        return key;
+    }
+
+    /**
+     * @return the time to live of the response of a read-only operation. A composite lives as long as its shortest lived step.
+     */
+    private long timeToLive(final ModelNode operation) {
+        final String name = operation.get(OP).asString();
+        if (COMPOSITE.equals(name)) {
+            long shortest = 0;
+            if (operation.hasDefined(STEPS)) {
+                for (ModelNode step : operation.get(STEPS).asList()) {
+                    final long ttl = timeToLive(step);
+                    if (ttl <= 0) {
+                        return 0;
+                    }
+                    shortest = shortest == 0 ? ttl : Math.min(shortest, ttl);
+                }
+            }
+            return shortest;
+        }
+        final Long ttl = timeToLive.get(name);
+        if (ttl != null) {
+            return ttl;
+        }
+        return OperationKey.READ_ONLY_OPERATIONS.contains(name) ? defaultTimeToLive : 0;
+    }
+
+    /**
+     * @return the addresses modified by the operation, or {@code null} if the operation only reads the model
+     */
+    private List<String[]> modifiedAddresses(final Operation operation) {
+        final ModelNode node = operation.getOperation();
+        if (OperationKey.isReadOnly(node, readOnlyOperations)) {
+            return null;
+        }
+        final List<String[]> addresses = new ArrayList<>();
+        OperationKey.collectModifiedAddresses(node, readOnlyOperations, addresses);
+        // invalidate before the operation, so that responses read concurrently are not cached
+        invalidate(addresses);
+        return addresses;
+    }
+
+    private void invalidate(final List<String[]> addresses) {
+        if (addresses == null || addresses.isEmpty()) {
+            return;
+        }
+        modifications.incrementAndGet();
+        synchronized (entries) {
+            for (Iterator<OperationKey> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+                final OperationKey key = iterator.next();
+                for (String[] address : addresses) {
+                    if (key.overlaps(address)) {
+                        iterator.remove();
+                        invalidations.incrementAndGet();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private ModelNode lookup(final OperationKey key) {
+        final Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expires - System.nanoTime() <= 0) {
+                entries.remove(key);
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.response.clone();
+    }
+
+    private void store(final OperationKey key, final long timeToLive, final ModelNode response, final long modification) {
+        if (!Operations.isSuccessfulOutcome(response)) {
+            return;
+        }
+        final Entry entry = new Entry(response.clone(), System.nanoTime() + timeToLive);
+        synchronized (entries) {
+            // don't cache a response which may have been read before a modification
+            if (modifications.get() != modification) {
+                return;
+            }
+            entries.put(key, entry);
+            if (entries.size() > maxEntries) {
+                final Iterator<OperationKey> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final ModelNode response;
+        private final long expires;
+
+        private Entry(final ModelNode response, final long expires) {
+            this.response = response;
+            this.expires = expires;
+        }
+    }
+
+    /** The utilization of the cache. */
+    public static final class CacheStatistics {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+        private final int size;
+
+        private CacheStatistics(long hits, long misses, long evictions, long invalidations, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.size = size;
+        }
+
+        /**
+         * @return the number of operations served from the cache
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return the number of cacheable operations which were executed because no valid response was cached
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the number of responses evicted because the cache was full
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the number of responses removed by modifying operations or {@link #invalidateAll()}
+         */
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        /**
+         * @return the number of cached responses
+         */
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStatistics(hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", invalidations="
+                    + invalidations + ", size=" + size + ")";
+        }
+    }
+
+    public static class Builder {
+
+        private static final long DEFAULT_TIME_TO_LIVE_MILLIS = 1000;
+        private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+        private final ModelControllerClient delegate;
+        private long defaultTimeToLive = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIME_TO_LIVE_MILLIS);
+        private final Map<String, Long> timeToLive = new HashMap<>();
+        private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+        private Builder(final ModelControllerClient delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Sets the time to live of the responses of the global read-only operations like {@code read-attribute},
+         * {@code read-resource} or {@code read-children-names}. Defaults to one second.
+         *
+         * @param timeToLive the time to live, {@code 0} to disable caching them
+         * @param unit the unit of the time to live
+         * @return this builder
+         */
+        public Builder setTimeToLive(final long timeToLive, final TimeUnit unit) {
+            Assert.checkMinimumParameter("timeToLive", 0, timeToLive);
+            this.defaultTimeToLive = unit.toNanos(timeToLive);
+            return this;
+        }
+
+        /**
+         * Sets the time to live of the responses of one operation. This can also be used to cache operations which are not
+         * global read-only operations, like read operations of subsystems. Such operations don't invalidate the cache.
+         *
+         * @param operationName the name of the operation
+         * @param timeToLive the time to live, {@code 0} to disable caching the operation
+         * @param unit the unit of the time to live
+         * @return this builder
+         */
+        public Builder setTimeToLive(final String operationName, final long timeToLive, final TimeUnit unit) {
+            Assert.checkNotNullParam("operationName", operationName);
+            Assert.checkMinimumParameter("timeToLive", 0, timeToLive);
+            this.timeToLive.put(operationName, unit.toNanos(timeToLive));
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of cached responses. Defaults to 1000.
+         *
+         * @param maxEntries the maximum number of cached responses
+         * @return this builder
+         */
+        public Builder setMaxEntries(final int maxEntries) {
+            if (maxEntries < 1) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("maxEntries", maxEntries, 0);
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * @return the caching client
+         */
+        public CachingModelControllerClient build() {
+            return new CachingModelControllerClient(this);
+        }
+    }
+}
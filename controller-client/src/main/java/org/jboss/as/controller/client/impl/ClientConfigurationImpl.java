@@ -35,9 +35,23 @@ public class ClientConfigurationImpl implements ModelControllerClientConfigurati
     private final String protocol;
     private final boolean shutdownExecutor;
     private final int connectionTimeout;
+    private final boolean sharedEndpoint;
+    private final int workerIoThreads;
+    private final int workerTaskThreads;
+    private final int responseStreamBufferSize;
+    private final int responseStreamReadAhead;
+    private final boolean coalesceReadOperations;
 
     public ClientConfigurationImpl(String address, int port, CallbackHandler handler, ExecutorService executorService,
             boolean shutdownExecutor, final int connectionTimeout, final String protocol, String clientBindAddress) {
+        this(address, port, handler, executorService, shutdownExecutor, connectionTimeout, protocol, clientBindAddress,
+                false, 0, 0, 0, 0, false);
+    }
+
+    public ClientConfigurationImpl(String address, int port, CallbackHandler handler, ExecutorService executorService,
+            boolean shutdownExecutor, final int connectionTimeout, final String protocol, String clientBindAddress,
+            boolean sharedEndpoint, int workerIoThreads, int workerTaskThreads, int responseStreamBufferSize,
+            int responseStreamReadAhead, boolean coalesceReadOperations) {
         this.address = address;
         this.port = port;
         this.handler = handler;
@@ -46,6 +60,12 @@ public class ClientConfigurationImpl implements ModelControllerClientConfigurati
         this.protocol = protocol;
         this.clientBindAddress = clientBindAddress;
         this.connectionTimeout = connectionTimeout > 0 ? connectionTimeout : DEFAULT_CONNECTION_TIMEOUT;
+        this.sharedEndpoint = sharedEndpoint;
+        this.workerIoThreads = workerIoThreads;
+        this.workerTaskThreads = workerTaskThreads;
+        this.responseStreamBufferSize = responseStreamBufferSize;
+        this.responseStreamReadAhead = responseStreamReadAhead;
+        this.coalesceReadOperations = coalesceReadOperations;
     }
 
     @Override
@@ -89,4 +109,34 @@ public class ClientConfigurationImpl implements ModelControllerClientConfigurati
     public String getClientBindAddress() {
         return clientBindAddress;
     }
+
+    @Override
+    public boolean isSharedEndpoint() {
+        return sharedEndpoint;
+    }
+
+    @Override
+    public int getWorkerIoThreads() {
+        return workerIoThreads;
+    }
+
+    @Override
+    public int getWorkerTaskThreads() {
+        return workerTaskThreads;
+    }
+
+    @Override
+    public int getResponseStreamBufferSize() {
+        return responseStreamBufferSize;
+    }
+
+    @Override
+    public int getResponseStreamReadAhead() {
+        return responseStreamReadAhead;
+    }
+
+    @Override
+    public boolean isCoalesceReadOperations() {
+        return coalesceReadOperations;
+    }
 }
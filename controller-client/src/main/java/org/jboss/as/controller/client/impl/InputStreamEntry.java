@@ -15,17 +15,18 @@
  */
 package org.jboss.as.controller.client.impl;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.DataOutput;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 import org.jboss.as.controller.client.logging.ControllerClientLogger;
 import org.jboss.as.protocol.StreamUtils;
@@ -39,7 +40,8 @@ public interface InputStreamEntry extends Closeable {
      * Initialize the input stream entry.
      *
      * @return the size of the underlying stream
-     * @throws java.io.IOException
+     * @throws java.io.IOException for any error, or if the stream is larger than {@link Integer#MAX_VALUE} bytes which is the
+     *         maximum size the management protocol can transfer
      */
     int initialize() throws IOException;
 
@@ -115,24 +117,19 @@ public interface InputStreamEntry extends Closeable {
             if (temp == null) {
                 temp = File.createTempFile("client", "stream");
                 try {
-                    return (int) Files.copy(original, temp.toPath());
+                    return checkSize(Files.copy(original, temp.toPath()));
                 } finally {
                     if (autoClose) {
                         StreamUtils.safeClose(original);
                     }
                 }
             }
-            return (int) temp.length();
+            return checkSize(temp.length());
         }
 
         @Override
         public synchronized void copyStream(final DataOutput output) throws IOException {
-            final FileInputStream is = new FileInputStream(temp);
-            try {
-                StreamUtils.copyStream(is, output);
-            } finally {
-                StreamUtils.safeClose(is);
-            }
+            StreamUtils.copyFile(temp.toPath(), output);
         }
 
         @Override
@@ -145,6 +142,150 @@ public interface InputStreamEntry extends Closeable {
         }
     }
 
+    /**
+     * Keep small streams in memory and spill larger streams to a temporary file. A stream of up to {@code threshold} bytes is
+     * kept in memory, only a stream larger than that is spilled. Regardless of the size of the stream, at most
+     * {@code threshold} bytes are held in memory.
+     */
+    class SpillingStreamEntry implements InputStreamEntry {
+
+        /** The default number of bytes kept in memory before spilling to disk. */
+        public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+        private static final int INITIAL_BUFFER_SIZE = 8192;
+
+        private final boolean autoClose;
+        private final InputStream original;
+        private final int threshold;
+
+        private boolean initialized;
+        private byte[] data;
+        private int length;
+        private Path temp;
+
+        public SpillingStreamEntry(final InputStream original, final boolean autoClose) {
+            this(original, autoClose, DEFAULT_THRESHOLD);
+        }
+
+        public SpillingStreamEntry(final InputStream original, final boolean autoClose, final int threshold) {
+            if (threshold < 1) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("threshold", threshold, 0);
+            }
+            this.original = original;
+            this.autoClose = autoClose;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public synchronized int initialize() throws IOException {
+            if (!initialized) {
+                try {
+                    read();
+                } finally {
+                    if (autoClose) {
+                        StreamUtils.safeClose(original);
+                    }
+                }
+                initialized = true;
+            }
+            return temp != null ? checkSize(Files.size(temp)) : length;
+        }
+
+        private void read() throws IOException {
+            byte[] buffer = new byte[Math.min(INITIAL_BUFFER_SIZE, threshold)];
+            int count = 0;
+            for (;;) {
+                if (count == buffer.length) {
+                    if (buffer.length == threshold) {
+                        // a stream of exactly threshold bytes still fits
+                        final int next = original.read();
+                        if (next == -1) {
+                            break;
+                        }
+                        spill(buffer, count, next);
+                        return;
+                    }
+                    buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length << 1, threshold));
+                }
+                final int read = original.read(buffer, count, buffer.length - count);
+                if (read == -1) {
+                    break;
+                }
+                count += read;
+            }
+            data = buffer;
+            length = count;
+        }
+
+        private void spill(final byte[] buffer, final int count, final int next) throws IOException {
+            temp = Files.createTempFile("client", "stream");
+            try (OutputStream os = Files.newOutputStream(temp)) {
+                os.write(buffer, 0, count);
+                os.write(next);
+                StreamUtils.copyStream(original, os);
+            }
+        }
+
+        @Override
+        public synchronized void copyStream(final DataOutput output) throws IOException {
+            if (temp != null) {
+                StreamUtils.copyFile(temp, output);
+            } else {
+                output.write(data, 0, length);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            data = null;
+            if (temp != null) {
+                try {
+                    Files.delete(temp);
+                } catch (IOException e) {
+                    ControllerClientLogger.ROOT_LOGGER.cannotDeleteTempFile(temp.getFileName().toString());
+                    temp.toFile().deleteOnExit();
+                }
+                temp = null;
+            }
+        }
+    }
+
+    /**
+     * Stream the data of a stream with a known size directly to the server without buffering it. The stream gets closed once
+     * the operation completed, regardless of autoClose.
+     */
+    class StreamingEntry extends FilterInputStream implements InputStreamEntry {
+
+        private final int size;
+
+        public StreamingEntry(final InputStream in, final int size) {
+            super(in);
+            if (size < 0) {
+                throw ControllerClientLogger.ROOT_LOGGER.invalidValue("size", size, -1);
+            }
+            this.size = size;
+        }
+
+        @Override
+        public int initialize() throws IOException {
+            return size;
+        }
+
+        @Override
+        public synchronized void copyStream(final DataOutput output) throws IOException {
+            // the size has already been sent, so copy exactly that many bytes
+            final byte[] buffer = new byte[8192];
+            int remaining = size;
+            while (remaining > 0) {
+                final int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new EOFException();
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
     InputStreamEntry EMPTY = new InputStreamEntry() {
         @Override
         public int initialize() throws IOException {
@@ -178,15 +319,28 @@ public interface InputStreamEntry extends Closeable {
 
         @Override
         public int initialize() throws IOException {
-            return (int) Files.size(file);
+            return checkSize(Files.size(file));
         }
 
         @Override
         public void copyStream(final DataOutput output) throws IOException {
-            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
-                StreamUtils.copyStream(in, output);
-            }
+            StreamUtils.copyFile(file, output);
         }
 
     }
+
+    /**
+     * Returns the size of an attachment as {@code int}, the management protocol announces the size of an attachment as
+     * {@code int}.
+     *
+     * @param size the size of the attachment
+     * @return the size
+     * @throws IOException if the attachment is larger than {@link Integer#MAX_VALUE} bytes
+     */
+    static int checkSize(final long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw ControllerClientLogger.ROOT_LOGGER.attachmentTooLarge(size, Integer.MAX_VALUE);
+        }
+        return (int) size;
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.EndpointBuilder;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+
+/**
+ * Creates the remoting endpoints of the management clients and keeps track of the shared endpoints.
+ * <p>
+ * There's one shared endpoint per worker configuration. It's created when the first client acquires it and closed when the last
+ * client releases it.
+ */
+public final class ManagementClientEndpoints {
+
+    private static final String ENDPOINT_NAME = "management-client";
+    private static final String SHARED_ENDPOINT_NAME = "management-client-shared";
+    private static final Map<WorkerKey, SharedEndpoint> SHARED = new HashMap<>();
+
+    private ManagementClientEndpoints() {
+    }
+
+    /**
+     * Creates a new endpoint which is owned by the caller.
+     *
+     * @param ioThreads the number of I/O threads, or {@code 0} for the XNIO default
+     * @param taskThreads the number of task threads, or {@code 0} for the XNIO default
+     * @return the endpoint
+     * @throws IOException if the endpoint could not be created
+     */
+    static Endpoint create(int ioThreads, int taskThreads) throws IOException {
+        return create(ENDPOINT_NAME, ioThreads, taskThreads);
+    }
+
+    /**
+     * Acquires the shared endpoint for the worker configuration and increments its reference count. Every successful call must
+     * be paired with a call to {@link #release(Endpoint)}.
+     *
+     * @param ioThreads the number of I/O threads, or {@code 0} for the XNIO default
+     * @param taskThreads the number of task threads, or {@code 0} for the XNIO default
+     * @return the shared endpoint
+     * @throws IOException if the endpoint could not be created
+     */
+    public static Endpoint acquire(int ioThreads, int taskThreads) throws IOException {
+        final WorkerKey key = new WorkerKey(ioThreads, taskThreads);
+        synchronized (SHARED) {
+            SharedEndpoint shared = SHARED.get(key);
+            if (shared == null) {
+                shared = new SharedEndpoint(key, create(SHARED_ENDPOINT_NAME, ioThreads, taskThreads));
+                SHARED.put(key, shared);
+            }
+            shared.references++;
+            return shared.endpoint;
+        }
+    }
+
+    /**
+     * Decrements the reference count of a shared endpoint and closes the endpoint asynchronously if it's no longer used.
+     *
+     * @param endpoint the shared endpoint as returned by {@link #acquire(int, int)}
+     */
+    public static void release(Endpoint endpoint) {
+        synchronized (SHARED) {
+            for (SharedEndpoint shared : SHARED.values()) {
+                if (shared.endpoint == endpoint) {
+                    if (--shared.references == 0) {
+                        SHARED.remove(shared.key);
+                        try {
+                            endpoint.closeAsync();
+                        } catch (UnsupportedOperationException ignored) {
+                        }
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private static Endpoint create(String name, int ioThreads, int taskThreads) throws IOException {
+        final EndpointBuilder builder = Endpoint.builder().setEndpointName(name);
+        if (ioThreads > 0 || taskThreads > 0) {
+            final XnioWorker.Builder worker = builder.buildXnioWorker(Xnio.getInstance());
+            if (ioThreads > 0) {
+                worker.setWorkerIoThreads(ioThreads);
+            }
+            if (taskThreads > 0) {
+                worker.setCoreWorkerPoolSize(taskThreads);
+                worker.setMaxWorkerPoolSize(taskThreads);
+            }
+        }
+        return builder.build();
+    }
+
+    private static final class SharedEndpoint {
+
+        private final WorkerKey key;
+        private final Endpoint endpoint;
+        private int references;
+
+        private SharedEndpoint(WorkerKey key, Endpoint endpoint) {
+            this.key = key;
+            this.endpoint = endpoint;
+        }
+    }
+
+    private static final class WorkerKey {
+
+        private final int ioThreads;
+        private final int taskThreads;
+
+        private WorkerKey(int ioThreads, int taskThreads) {
+            this.ioThreads = ioThreads;
+            this.taskThreads = taskThreads;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof WorkerKey)) {
+                return false;
+            }
+            final WorkerKey other = (WorkerKey) o;
+            return ioThreads == other.ioThreads && taskThreads == other.taskThreads;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * ioThreads + taskThreads;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.jboss.as.controller.client.ModelNodeVisitor;
+import org.jboss.as.controller.client.ResponseProjection;
+import org.jboss.as.controller.client.logging.ControllerClientLogger;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.ValueExpression;
+
+/**
+ * Decodes the binary DMR format written by {@link ModelNode#writeExternal(java.io.DataOutput)} incrementally. The structure is
+ * either reported to a {@link ModelNodeVisitor} without materializing objects, lists and properties, or only the parts selected
+ * by a {@link ResponseProjection} are materialized.
+ */
+final class ModelNodeDecoder {
+
+    private ModelNodeDecoder() {
+    }
+
+    /**
+     * Decodes one node from the input and reports it to a visitor.
+     *
+     * @param input the input positioned at the type of the node
+     * @param visitor the visitor
+     * @throws IOException if the node cannot be read
+     */
+    static void decode(final DataInput input, final ModelNodeVisitor visitor) throws IOException {
+        final char type = readType(input);
+        switch (type) {
+            case 'o': {
+                final int size = input.readInt();
+                visitor.startObject(size);
+                for (int i = 0; i < size; i++) {
+                    visitor.key(input.readUTF());
+                    decode(input, visitor);
+                }
+                visitor.endObject();
+                break;
+            }
+            case 'l': {
+                final int size = input.readInt();
+                visitor.startList(size);
+                for (int i = 0; i < size; i++) {
+                    decode(input, visitor);
+                }
+                visitor.endList();
+                break;
+            }
+            case 'p':
+                visitor.startProperty(input.readUTF());
+                decode(input, visitor);
+                visitor.endProperty();
+                break;
+            default:
+                final ModelNode value = new ModelNode();
+                read(value, type, input);
+                visitor.value(value);
+                break;
+        }
+    }
+
+    /**
+     * Decodes one node from the input, but only materializes the parts selected by a projection. The other parts are skipped
+     * without decoding them.
+     *
+     * @param input the input positioned at the type of the node
+     * @param projection the projection
+     * @return the selected parts of the node
+     * @throws IOException if the node cannot be read
+     */
+    static ModelNode decode(final DataInput input, final ResponseProjection projection) throws IOException {
+        final ModelNode node = new ModelNode();
+        new Projector(input).project(node, readType(input), projection);
+        return node;
+    }
+
+    /**
+     * Reads the selected parts of a node. Keys are only decoded if they're selected or if they're matched by a wildcard.
+     */
+    private static final class Projector {
+
+        private final DataInput input;
+        private byte[] key = new byte[64];
+
+        private Projector(final DataInput input) {
+            this.input = input;
+        }
+
+        /**
+         * Reads the selected parts of a node into the target.
+         *
+         * @return {@code false} if nothing was selected and the target should be removed
+         */
+        private boolean project(final ModelNode target, final char type, final ResponseProjection projection)
+                throws IOException {
+            if (projection.isComplete()) {
+                read(target, type, input);
+                return true;
+            }
+            switch (type) {
+                case 'o': {
+                    final int size = input.readInt();
+                    target.setEmptyObject();
+                    for (int i = 0; i < size; i++) {
+                        final String name = readKey(projection);
+                        final ResponseProjection child = name != null ? projection.select(name) : null;
+                        if (child == null) {
+                            skip(readType(input), input);
+                        } else if (!project(target.get(name), readType(input), child)) {
+                            target.remove(name);
+                        }
+                    }
+                    return true;
+                }
+                case 'l': {
+                    final int size = input.readInt();
+                    target.setEmptyList();
+                    int selected = 0;
+                    for (int i = 0; i < size; i++) {
+                        final ResponseProjection child = projection.select(Integer.toString(i));
+                        if (child == null) {
+                            skip(readType(input), input);
+                        } else if (project(target.add(), readType(input), child)) {
+                            selected++;
+                        } else {
+                            target.remove(selected);
+                        }
+                    }
+                    return true;
+                }
+                case 'p': {
+                    final String name = readKey(projection);
+                    final ResponseProjection child = name != null ? projection.select(name) : null;
+                    if (child == null) {
+                        skip(readType(input), input);
+                        return false;
+                    }
+                    final ModelNode value = new ModelNode();
+                    if (project(value, readType(input), child)) {
+                        target.set(name, value);
+                        return true;
+                    }
+                    return false;
+                }
+                default:
+                    skip(type, input);
+                    return false;
+            }
+        }
+
+        /**
+         * Reads a key. Without a wildcard, the encoded key is compared to the selected keys.
+         *
+         * @return the key or {@code null} if it's not selected
+         */
+        private String readKey(final ResponseProjection projection) throws IOException {
+            if (projection.hasWildcard()) {
+                return input.readUTF();
+            }
+            final int length = input.readUnsignedShort();
+            if (key.length < length) {
+                key = new byte[Math.max(length, key.length * 2)];
+            }
+            input.readFully(key, 0, length);
+            return projection.findKey(key, length);
+        }
+    }
+
+    /**
+     * Reads a complete node into the target.
+     */
+    private static void read(final ModelNode target, final char type, final DataInput input) throws IOException {
+        switch (type) {
+            case 'o': {
+                final int size = input.readInt();
+                target.setEmptyObject();
+                for (int i = 0; i < size; i++) {
+                    final ModelNode child = target.get(input.readUTF());
+                    read(child, readType(input), input);
+                }
+                break;
+            }
+            case 'l': {
+                final int size = input.readInt();
+                target.setEmptyList();
+                for (int i = 0; i < size; i++) {
+                    read(target.add(), readType(input), input);
+                }
+                break;
+            }
+            case 'p': {
+                final String name = input.readUTF();
+                final ModelNode value = new ModelNode();
+                read(value, readType(input), input);
+                target.set(name, value);
+                break;
+            }
+            case 'u':
+                break;
+            case 'd':
+                target.set(new BigDecimal(input.readUTF()));
+                break;
+            case 'i': {
+                final byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                target.set(new BigInteger(bytes));
+                break;
+            }
+            case 'Z':
+                target.set(input.readBoolean());
+                break;
+            case 'b': {
+                final byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                target.set(bytes);
+                break;
+            }
+            case 'D':
+                target.set(input.readDouble());
+                break;
+            case 'e':
+                target.set(new ValueExpression(input.readUTF()));
+                break;
+            case 'I':
+                target.set(input.readInt());
+                break;
+            case 'J':
+                target.set(input.readLong());
+                break;
+            case 's':
+                target.set(input.readUTF());
+                break;
+            case 'S':
+                target.set(readLongString(input));
+                break;
+            case 't':
+                target.set(modelType(readType(input)));
+                break;
+            default:
+                throw ControllerClientLogger.ROOT_LOGGER.invalidModelType(type);
+        }
+    }
+
+    /**
+     * Skips a node without decoding it.
+     */
+    private static void skip(final char type, final DataInput input) throws IOException {
+        switch (type) {
+            case 'o': {
+                final int size = input.readInt();
+                for (int i = 0; i < size; i++) {
+                    skipBytes(input, input.readUnsignedShort());
+                    skip(readType(input), input);
+                }
+                break;
+            }
+            case 'l': {
+                final int size = input.readInt();
+                for (int i = 0; i < size; i++) {
+                    skip(readType(input), input);
+                }
+                break;
+            }
+            case 'p':
+                skipBytes(input, input.readUnsignedShort());
+                skip(readType(input), input);
+                break;
+            case 'u':
+                break;
+            case 'd':
+            case 'e':
+            case 's':
+                skipBytes(input, input.readUnsignedShort());
+                break;
+            case 'i':
+            case 'b':
+                skipBytes(input, input.readInt());
+                break;
+            case 'Z':
+            case 't':
+                skipBytes(input, 1);
+                break;
+            case 'I':
+                skipBytes(input, 4);
+                break;
+            case 'D':
+            case 'J':
+                skipBytes(input, 8);
+                break;
+            case 'S': {
+                // the length is the number of characters, each taking one to three bytes
+                final int length = input.readInt();
+                for (int i = 0; i < length; i++) {
+                    final int a = input.readUnsignedByte();
+                    if (a >= 0xe0) {
+                        skipBytes(input, 2);
+                    } else if (a >= 0x80) {
+                        skipBytes(input, 1);
+                    }
+                }
+                break;
+            }
+            default:
+                throw ControllerClientLogger.ROOT_LOGGER.invalidModelType(type);
+        }
+    }
+
+    private static void skipBytes(final DataInput input, int n) throws IOException {
+        while (n > 0) {
+            final int skipped = input.skipBytes(n);
+            if (skipped > 0) {
+                n -= skipped;
+            } else {
+                // skipBytes() doesn't report the end of the input
+                input.readByte();
+                n--;
+            }
+        }
+    }
+
+    private static char readType(final DataInput input) throws IOException {
+        return (char) (input.readByte() & 0xff);
+    }
+
+    /**
+     * Reads a string which is too long for {@link DataInput#readUTF()}: the number of characters followed by the characters in
+     * modified UTF-8.
+     */
+    private static String readLongString(final DataInput input) throws IOException {
+        final int length = input.readInt();
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            final int a = input.readUnsignedByte();
+            if (a < 0x80) {
+                chars[i] = (char) a;
+            } else if (a < 0xc0) {
+                throw new UTFDataFormatException();
+            } else if (a < 0xe0) {
+                final int b = continuation(input);
+                chars[i] = (char) ((a & 0x1f) << 6 | b);
+            } else if (a < 0xf0) {
+                final int b = continuation(input);
+                final int c = continuation(input);
+                chars[i] = (char) ((a & 0x0f) << 12 | b << 6 | c);
+            } else {
+                throw new UTFDataFormatException();
+            }
+        }
+        return new String(chars);
+    }
+
+    private static int continuation(final DataInput input) throws IOException {
+        final int b = input.readUnsignedByte();
+        if ((b & 0xc0) != 0x80) {
+            throw new UTFDataFormatException();
+        }
+        return b & 0x3f;
+    }
+
+    private static ModelType modelType(final char type) throws IOException {
+        switch (type) {
+            case 'd':
+                return ModelType.BIG_DECIMAL;
+            case 'i':
+                return ModelType.BIG_INTEGER;
+            case 'Z':
+                return ModelType.BOOLEAN;
+            case 'b':
+                return ModelType.BYTES;
+            case 'D':
+                return ModelType.DOUBLE;
+            case 'e':
+                return ModelType.EXPRESSION;
+            case 'I':
+                return ModelType.INT;
+            case 'l':
+                return ModelType.LIST;
+            case 'J':
+                return ModelType.LONG;
+            case 'o':
+                return ModelType.OBJECT;
+            case 'p':
+                return ModelType.PROPERTY;
+            case 's':
+            case 'S':
+                return ModelType.STRING;
+            case 't':
+                return ModelType.TYPE;
+            case 'u':
+                return ModelType.UNDEFINED;
+            default:
+                throw ControllerClientLogger.ROOT_LOGGER.invalidModelType(type);
+        }
+    }
+}
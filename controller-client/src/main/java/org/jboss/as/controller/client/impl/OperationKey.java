@@ -0,0 +1,215 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.Property;
+
+import static org.jboss.as.controller.client.helpers.ClientConstants.COMPOSITE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OP;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OP_ADDR;
+import static org.jboss.as.controller.client.helpers.ClientConstants.STEPS;
+
+/**
+ * Identifies an operation by its name, its canonical address and its parameters. Two operations with the same key return the
+ * same result as long as the model doesn't change. The order of the parameters and the format of the address don't matter.
+ */
+final class OperationKey {
+
+    /** The global operations which don't modify the model. */
+    static final Set<String> READ_ONLY_OPERATIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "query",
+            "read-attribute",
+            "read-attribute-group",
+            "read-attribute-group-names",
+            "read-children-names",
+            "read-children-resources",
+            "read-children-types",
+            "read-operation-description",
+            "read-operation-names",
+            "read-resource",
+            "read-resource-description",
+            "whoami")));
+
+    private static final String WILDCARD = "*";
+
+    private final String name;
+    private final String[] address;
+    private final String parameters;
+    private final int hash;
+
+    private OperationKey(final String name, final String[] address, final String parameters) {
+        this.name = name;
+        this.address = address;
+        this.parameters = parameters;
+        this.hash = 31 * (31 * name.hashCode() + Arrays.hashCode(address)) + parameters.hashCode();
+    }
+
+    /**
+     * Creates the key of an operation.
+     *
+     * @param operation the operation
+     * @return the key, or {@code null} if the operation has no name or an invalid address
+     */
+    static OperationKey of(final ModelNode operation) {
+        if (!operation.hasDefined(OP)) {
+            return null;
+        }
+        final String[] address = canonicalAddress(operation);
+        if (address == null) {
+            return null;
+        }
+        // sort the parameters, so that their order doesn't matter
+        final Set<String> keys = new TreeSet<>(operation.keys());
+        keys.remove(OP);
+        keys.remove(OP_ADDR);
+        final ModelNode parameters = new ModelNode().setEmptyObject();
+        for (String key : keys) {
+            parameters.get(key).set(operation.get(key));
+        }
+        return new OperationKey(operation.get(OP).asString(), address, parameters.toJSONString(true));
+    }
+
+    /**
+     * Returns whether an operation only reads the model. Composite operations only read the model if all of their steps do.
+     *
+     * @param operation the operation
+     * @param readOnlyOperations the names of the operations which don't modify the model
+     * @return {@code true} if the operation doesn't modify the model
+     */
+    static boolean isReadOnly(final ModelNode operation, final Set<String> readOnlyOperations) {
+        if (!operation.hasDefined(OP)) {
+            return false;
+        }
+        final String name = operation.get(OP).asString();
+        if (COMPOSITE.equals(name)) {
+            if (operation.hasDefined(STEPS)) {
+                for (ModelNode step : operation.get(STEPS).asList()) {
+                    if (!isReadOnly(step, readOnlyOperations)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return readOnlyOperations.contains(name);
+    }
+
+    /**
+     * Collects the addresses which may be modified by an operation. The address of a composite operation is replaced by the
+     * addresses of its steps which modify the model.
+     *
+     * @param operation the operation
+     * @param readOnlyOperations the names of the operations which don't modify the model
+     * @param addresses the list the canonical addresses are added to. An invalid address is reported as the root address.
+     */
+    static void collectModifiedAddresses(final ModelNode operation, final Set<String> readOnlyOperations,
+            final List<String[]> addresses) {
+        if (operation.hasDefined(OP) && COMPOSITE.equals(operation.get(OP).asString())) {
+            if (operation.hasDefined(STEPS)) {
+                for (ModelNode step : operation.get(STEPS).asList()) {
+                    if (!isReadOnly(step, readOnlyOperations)) {
+                        collectModifiedAddresses(step, readOnlyOperations, addresses);
+                    }
+                }
+            }
+            return;
+        }
+        final String[] address = canonicalAddress(operation);
+        addresses.add(address != null ? address : new String[0]);
+    }
+
+    /**
+     * Returns whether this key's address overlaps with another address. Addresses overlap if one is a prefix of the other,
+     * where the wildcard {@code *} matches any type or name.
+     *
+     * @param other the canonical address
+     * @return {@code true} if the addresses overlap
+     */
+    boolean overlaps(final String[] other) {
+        final int length = Math.min(address.length, other.length);
+        for (int i = 0; i < length; i++) {
+            if (!address[i].equals(other[i]) && !WILDCARD.equals(address[i]) && !WILDCARD.equals(other[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the address as alternating types and names.
+     */
+    private static String[] canonicalAddress(final ModelNode operation) {
+        if (!operation.hasDefined(OP_ADDR)) {
+            return new String[0];
+        }
+        final ModelNode address = operation.get(OP_ADDR);
+        if (address.getType() != ModelType.LIST) {
+            return null;
+        }
+        final List<String> segments = new ArrayList<>();
+        for (ModelNode element : address.asList()) {
+            if (element.getType() == ModelType.PROPERTY) {
+                final Property property = element.asProperty();
+                segments.add(property.getName());
+                segments.add(property.getValue().asString());
+            } else if (element.getType() == ModelType.OBJECT && element.keys().size() == 1) {
+                final String type = element.keys().iterator().next();
+                segments.add(type);
+                segments.add(element.get(type).asString());
+            } else {
+                return null;
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OperationKey)) {
+            return false;
+        }
+        final OperationKey other = (OperationKey) o;
+        return hash == other.hash && name.equals(other.name) && Arrays.equals(address, other.address)
+                && parameters.equals(other.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i + 1 < address.length; i += 2) {
+            builder.append('/').append(address[i]).append('=').append(address[i + 1]);
+        }
+        return (builder.length() == 0 ? "/" : builder.toString()) + ":" + name + parameters;
+    }
+}
@@ -18,19 +18,25 @@ package org.jboss.as.controller.client.impl;
 import java.io.DataInput;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.as.controller.client.logging.ControllerClientLogger;
 import org.jboss.as.protocol.StreamUtils;
 import org.jboss.as.protocol.mgmt.AbstractManagementRequest;
 import org.jboss.as.protocol.mgmt.ActiveOperation;
 import org.jboss.as.protocol.mgmt.FlushableDataOutput;
 import org.jboss.as.protocol.mgmt.ManagementChannelAssociation;
+import org.jboss.as.protocol.mgmt.ManagementChannelReceiver;
 import org.jboss.as.protocol.mgmt.ManagementRequest;
 import org.jboss.as.protocol.mgmt.ManagementRequestContext;
 import org.jboss.as.protocol.mgmt.ProtocolUtils;
@@ -48,7 +54,7 @@ public class OperationResponseProxy implements OperationResponse {
     private final Map<String, StreamEntry> proxiedStreams;
 
     private OperationResponseProxy(final ModelNode responseNode, final ManagementChannelAssociation channelAssociation,
-            final int batchId, final ModelNode streamHeader) {
+            final int batchId, final ModelNode streamHeader, final int bufferSize, final int readAhead) {
         this.responseNode = responseNode;
         int size = streamHeader.asInt();
         proxiedStreams = new LinkedHashMap<String, StreamEntry>(size);
@@ -56,13 +62,38 @@ public class OperationResponseProxy implements OperationResponse {
             ModelNode headerElement = streamHeader.get(i);
             final String uuid = headerElement.require("uuid").asString();
             final String mimeType = headerElement.require("mime-type").asString();
-            proxiedStreams.put(uuid, new ProxiedInputStream(uuid, mimeType, channelAssociation, batchId, i));
+            proxiedStreams.put(uuid, new ProxiedInputStream(uuid, mimeType, channelAssociation, batchId, i,
+                    bufferSize, i < readAhead));
+        }
+        // Start fetching the first streams in parallel, they are buffered until the caller reads them
+        for (StreamEntry entry : proxiedStreams.values()) {
+            final ProxiedInputStream stream = (ProxiedInputStream) entry;
+            if (stream.readAhead) {
+                stream.readInputStream();
+            }
         }
     }
 
     public static OperationResponseProxy create(final ModelNode responseNode,
             final ManagementChannelAssociation channelAssociation, final int batchId, final ModelNode streamHeader) {
-        return new OperationResponseProxy(responseNode, channelAssociation, batchId, streamHeader);
+        return create(responseNode, channelAssociation, batchId, streamHeader, Pipe.DEFAULT_BUFFER_SIZE);
+    }
+
+    public static OperationResponseProxy create(final ModelNode responseNode,
+            final ManagementChannelAssociation channelAssociation, final int batchId, final ModelNode streamHeader,
+            final int bufferSize) {
+        return create(responseNode, channelAssociation, batchId, streamHeader, bufferSize, 0);
+    }
+
+    /**
+     * Creates a response which reads the first {@code readAhead} streams ahead of their consumers. Each stream buffers up to
+     * {@code bufferSize} unread bytes in memory, a read-ahead stream spills the bytes which don't fit to a temporary file.
+     */
+    public static OperationResponseProxy create(final ModelNode responseNode,
+            final ManagementChannelAssociation channelAssociation, final int batchId, final ModelNode streamHeader,
+            final int bufferSize, final int readAhead) {
+        return new OperationResponseProxy(responseNode, channelAssociation, batchId, streamHeader, bufferSize,
+                readAhead);
     }
 
     @Override
@@ -97,37 +128,54 @@ public class OperationResponseProxy implements OperationResponse {
         private final String mimeType;
         private final int index;
         private final int batchId;
-        private final Pipe pipe;
+        private final boolean readAhead;
+        private final InputStream in;
+        private final OutputStream out;
         private final ManagementChannelAssociation channelAssociation;
         private volatile boolean remoteClosed;
         private boolean remoteRead;
         private volatile Exception error;
+        /** The pipe and the read-ahead buffer support a single reader, concurrent reads take turns */
+        private final Object readLock = new Object();
 
         ProxiedInputStream(final String uuid, final String mimeType,
                 final ManagementChannelAssociation channelAssociation,
-                final int batchId, final int index) {
+                final int batchId, final int index, final int bufferSize, final boolean readAhead) {
             this.uuid = uuid;
             this.mimeType = mimeType;
             this.channelAssociation = channelAssociation;
             this.batchId = batchId;
             this.index = index;
-            pipe = new Pipe(BUFFER_SIZE);
+            this.readAhead = readAhead;
+            if (readAhead) {
+                final ReadAheadBuffer buffer = new ReadAheadBuffer(bufferSize);
+                in = buffer.getIn();
+                out = buffer.getOut();
+            } else {
+                final Pipe pipe = new Pipe(bufferSize);
+                in = pipe.getIn();
+                out = pipe.getOut();
+            }
         }
 
         @Override
         public int read() throws IOException {
-            if (available() < 1) {
-                readRemote();
+            synchronized (readLock) {
+                if (available() < 1) {
+                    readRemote();
+                }
+                return in.read();
             }
-            return pipe.getIn().read();
         }
 
         @Override
         public int read(byte[] b, int off, int len) throws IOException {
-            if (available() < len) {
-                readRemote();
+            synchronized (readLock) {
+                if (available() < len) {
+                    readRemote();
+                }
+                return in.read(b, off, len);
             }
-            return pipe.getIn().read(b, off, len);
         }
 
         @Override
@@ -139,14 +187,14 @@ public class OperationResponseProxy implements OperationResponse {
                 ex = e;
             }
             try {
-                pipe.getOut().close();
+                out.close();
             } catch (IOException e) {
                 if (ex == null) {
                     ex = e;
                 }
             }
             try {
-                pipe.getIn().close();
+                in.close();
             } catch (IOException e) {
                 if (ex == null) {
                     ex = e;
@@ -159,7 +207,7 @@ public class OperationResponseProxy implements OperationResponse {
 
         @Override
         public int available() throws IOException {
-            return pipe.getIn().available();
+            return in.available();
         }
 
         private void readRemote() throws IOException {
@@ -172,9 +220,58 @@ public class OperationResponseProxy implements OperationResponse {
                 return;
             }
 
-            final OutputStream os = pipe.getOut();
-            // Execute the async request
-            final ManagementRequest<Void, Void> getISRequest = new AbstractManagementRequest<Void, Void>() {
+            try {
+                channelAssociation.executeRequest(createReadRequest(out), null);
+                remoteRead = true;
+            } catch (IOException e) {
+                shutdown(e);
+            }
+        }
+
+        @Override
+        public long transferTo(final WritableByteChannel target) throws IOException {
+            if (ManagementChannelReceiver.isReceiveThread()) {
+                // the data is written by the receive thread, waiting for it there would never return
+                throw ControllerClientLogger.ROOT_LOGGER.transferOnReceiveThread();
+            }
+            final ChannelOutputStream os = new ChannelOutputStream(target);
+            final ActiveOperation<Void, Void> operation;
+            synchronized (this) {
+                if (remoteRead || remoteClosed) {
+                    operation = null;
+                } else {
+                    // Read the remote stream straight into the target, bypassing the pipe
+                    try {
+                        operation = channelAssociation.executeRequest(createReadRequest(os), null);
+                        remoteRead = true;
+                    } catch (IOException e) {
+                        shutdown(e);
+                        throw e;
+                    }
+                }
+            }
+            if (operation == null) {
+                // Some data has already been requested through the pipe, continue reading from there
+                return StreamEntry.super.transferTo(target);
+            }
+            try {
+                operation.getResult().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            // Nothing is left for readers of the stream
+            out.close();
+            return os.count;
+        }
+
+        private ManagementRequest<Void, Void> createReadRequest(final OutputStream os) {
+            return new AbstractManagementRequest<Void, Void>() {
 
                 @Override
                 public byte getOperationType() {
@@ -196,6 +293,7 @@ public class OperationResponseProxy implements OperationResponse {
                     try {
                         // Loop reading chunk until we get an end message
                         IOException pipeWriteException = null;
+                        final byte[] buffer = new byte[BUFFER_SIZE];
                         for (;;) {
                             byte header = input.readByte();
                             if (header == ModelControllerProtocol.PARAM_END) {
@@ -205,7 +303,6 @@ public class OperationResponseProxy implements OperationResponse {
                             ProtocolUtils.expectHeader(header, ModelControllerProtocol.PARAM_INPUTSTREAM_LENGTH);
                             int size = input.readInt();
                             ProtocolUtils.expectHeader(input, ModelControllerProtocol.PARAM_INPUTSTREAM_CONTENTS);
-                            final byte[] buffer = new byte[BUFFER_SIZE];
                             int totalRead = 0;
                             while (totalRead < size) {
                                 int len = Math.min(size - totalRead, buffer.length);
@@ -214,7 +311,7 @@ public class OperationResponseProxy implements OperationResponse {
                                     try {
                                         os.write(buffer, 0, len);
                                     } catch (IOException e) {
-                                        // The ProxiedInputStream must have been closed
+                                        // The ProxiedInputStream or the target must have been closed
                                         // From now on we just read and discard the bytes
                                         pipeWriteException = e;
                                     }
@@ -235,13 +332,6 @@ public class OperationResponseProxy implements OperationResponse {
                     }
                 }
             };
-
-            try {
-                channelAssociation.executeRequest(getISRequest, null);
-                remoteRead = true;
-            } catch (IOException e) {
-                shutdown(e);
-            }
         }
 
         private void closeRemote() throws IOException {
@@ -288,6 +378,33 @@ public class OperationResponseProxy implements OperationResponse {
             this.error = error;
         }
 
+        /**
+         * Writes to a channel and counts the bytes. Closing it leaves the channel open.
+         */
+        private static final class ChannelOutputStream extends OutputStream {
+
+            private final WritableByteChannel channel;
+            private long count;
+
+            private ChannelOutputStream(final WritableByteChannel channel) {
+                this.channel = channel;
+            }
+
+            @Override
+            public void write(final int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                count += len;
+            }
+        }
+
         @Override
         public String getUUID() {
             return uuid;
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
 
 import org.jboss.as.controller.client.logging.ControllerClientLogger;
 
@@ -26,7 +27,10 @@ import org.jboss.as.controller.client.logging.ControllerClientLogger;
  * An in-VM pipe between an input stream and an output stream, which does not suffer from the bugs in
  * {@link java.io.PipedInputStream}.
  * <p>
- * This is forked from {@link org.xnio.streams.Pipe} to throw an exception if the writer kills the pipe
+ * This was forked from {@link org.xnio.streams.Pipe} to throw an exception if the writer kills the pipe. It's a
+ * single-producer/single-consumer ring buffer: the writer only advances {@code head} and the reader only advances {@code tail},
+ * so bulk reads and writes need no lock. A thread which has to wait for data or space parks itself and is unparked by the other
+ * side.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  * @author Kabir Khan
@@ -34,23 +38,33 @@ import org.jboss.as.controller.client.logging.ControllerClientLogger;
  */
 final class Pipe {
 
-    private final Object lock = new Object();
+    /** The default buffer size. */
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
 
-    /** the point at which a read shall occur **/
-    private int tail;
-    /** the size of the buffer content **/
-    private int size;
     private final byte[] buffer;
-    private boolean writeClosed;
-    private boolean readClosed;
+    private final int mask;
+    /** the total number of bytes written, only modified by the writer **/
+    private volatile long head;
+    /** the total number of bytes read, only modified by the reader **/
+    private volatile long tail;
+    private volatile boolean writeClosed;
+    private volatile boolean readClosed;
+    private volatile Thread waitingReader;
+    private volatile Thread waitingWriter;
+    private final Object closeLock = new Object();
 
     /**
      * Construct a new instance.
      *
-     * @param bufferSize the buffer size to use
+     * @param bufferSize the buffer size to use, rounded up to the next power of two
      */
     public Pipe(int bufferSize) {
-        buffer = new byte[bufferSize];
+        if (bufferSize < 1 || bufferSize > 1 << 30) {
+            throw ControllerClientLogger.ROOT_LOGGER.invalidValue("bufferSize", bufferSize, 0, 1 << 30);
+        }
+        final int capacity = bufferSize == 1 ? 1 : Integer.highestOneBit(bufferSize - 1) << 1;
+        buffer = new byte[capacity];
+        mask = capacity - 1;
     }
 
     /**
@@ -58,12 +72,11 @@ final class Pipe {
      */
     public void await() {
         boolean intr = false;
-        final Object lock = this.lock;
         try {
-            synchronized (lock) {
+            synchronized (closeLock) {
                 while (!readClosed) {
                     try {
-                        lock.wait();
+                        closeLock.wait();
                     } catch (InterruptedException e) {
                         intr = true;
                     }
@@ -76,202 +89,159 @@ final class Pipe {
         }
     }
 
+    private void closeRead() {
+        writeClosed = true;
+        readClosed = true;
+        LockSupport.unpark(waitingWriter);
+        synchronized (closeLock) {
+            closeLock.notifyAll();
+        }
+    }
+
+    private void closeWrite() {
+        writeClosed = true;
+        LockSupport.unpark(waitingReader);
+    }
+
+    /**
+     * Waits until there's data to read or the pipe is closed.
+     *
+     * @return the number of bytes which can be read, or {@code -1} at the end of the stream
+     */
+    private int awaitReadable() throws InterruptedIOException {
+        final long tail = this.tail;
+        for (;;) {
+            if (readClosed) {
+                return -1;
+            }
+            // read writeClosed before head, so that no bytes written before the close are missed
+            final boolean closed = writeClosed;
+            final int available = (int) (head - tail);
+            if (available > 0) {
+                return available;
+            }
+            if (closed) {
+                return -1;
+            }
+            waitingReader = Thread.currentThread();
+            if (head == tail && !writeClosed) {
+                LockSupport.park(this);
+            }
+            waitingReader = null;
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    /**
+     * Waits until there's space to write.
+     *
+     * @return the number of bytes which can be written
+     */
+    private int awaitWritable(final int transferred) throws IOException {
+        final long head = this.head;
+        final int capacity = buffer.length;
+        for (;;) {
+            if (writeClosed) {
+                throw ControllerClientLogger.ROOT_LOGGER.streamWasClosed();
+            }
+            final int free = capacity - (int) (head - tail);
+            if (free > 0) {
+                return free;
+            }
+            waitingWriter = Thread.currentThread();
+            if (head - tail == capacity && !writeClosed) {
+                LockSupport.park(this);
+            }
+            waitingWriter = null;
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                final InterruptedIOException iioe = new InterruptedIOException();
+                iioe.bytesTransferred = transferred;
+                throw iioe;
+            }
+        }
+    }
+
     private final InputStream in = new InputStream() {
         public int read() throws IOException {
-            final Object lock = Pipe.this.lock;
-            synchronized (lock) {
-                if (writeClosed && size == 0) {
-                    return -1;
-                }
-                while (size == 0) {
-                    try {
-                        lock.wait();
-                        if (writeClosed && size == 0) {
-                            return -1;
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new InterruptedIOException();
-                    }
-                }
-                lock.notifyAll();
-                int tail = Pipe.this.tail;
-                try {
-                    return buffer[tail++] & 0xff;
-                } finally {
-                    Pipe.this.tail = tail == buffer.length ? 0 : tail;
-                    size--;
-                }
+            if (awaitReadable() == -1) {
+                return -1;
             }
+            final long tail = Pipe.this.tail;
+            final int b = buffer[(int) tail & mask] & 0xff;
+            Pipe.this.tail = tail + 1;
+            LockSupport.unpark(waitingWriter);
+            return b;
         }
 
         public int read(final byte[] b, final int off, final int len) throws IOException {
-            final Object lock = Pipe.this.lock;
-            synchronized (lock) {
-                if (writeClosed && size == 0) {
-                    return -1;
-                }
-                if (len == 0) {
-                    return 0;
-                }
-                int size;
-                while ((size = Pipe.this.size) == 0) {
-                    try {
-                        lock.wait();
-                        if (writeClosed && (size = Pipe.this.size) == 0) {
-                            return -1;
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new InterruptedIOException();
-                    }
-                }
-                final byte[] buffer = Pipe.this.buffer;
-                final int bufLen = buffer.length;
-                int cnt;
-                int tail = Pipe.this.tail;
-                if (size + tail > bufLen) {
-                    // wrapped
-                    final int lastLen = bufLen - tail;
-                    if (lastLen < len) {
-                        final int firstLen = tail + size - bufLen;
-                        System.arraycopy(buffer, tail, b, off, lastLen);
-                        int rem = Math.min(len - lastLen, firstLen);
-                        System.arraycopy(buffer, 0, b, off + lastLen, rem);
-                        cnt = rem + lastLen;
-                    } else {
-                        System.arraycopy(buffer, tail, b, off, len);
-                        cnt = len;
-                    }
-                } else {
-                    // not wrapped
-                    cnt = Math.min(len, size);
-                    System.arraycopy(buffer, tail, b, off, cnt);
-                }
-                tail += cnt;
-                size -= cnt;
-                Pipe.this.tail = tail >= bufLen ? tail - bufLen : tail;
-                Pipe.this.size = size;
-                lock.notifyAll();
-                return cnt;
+            if (len == 0) {
+                return readClosed || (writeClosed && head == tail) ? -1 : 0;
+            }
+            final int available = awaitReadable();
+            if (available == -1) {
+                return -1;
             }
+            final byte[] buffer = Pipe.this.buffer;
+            final long tail = Pipe.this.tail;
+            final int cnt = Math.min(len, available);
+            final int pos = (int) tail & mask;
+            final int firstPart = Math.min(cnt, buffer.length - pos);
+            System.arraycopy(buffer, pos, b, off, firstPart);
+            if (firstPart < cnt) {
+                // wrapped
+                System.arraycopy(buffer, 0, b, off + firstPart, cnt - firstPart);
+            }
+            Pipe.this.tail = tail + cnt;
+            LockSupport.unpark(waitingWriter);
+            return cnt;
         }
 
         public void close() throws IOException {
-            final Object lock = Pipe.this.lock;
-            synchronized (lock) {
-                writeClosed = true;
-                readClosed = true;
-                // closing the read side drops the remaining bytes
-                size = 0;
-                lock.notifyAll();
-                return;
-            }
+            // closing the read side drops the remaining bytes
+            closeRead();
         }
 
         @Override
         public int available() throws IOException {
-            final Object lock = Pipe.this.lock;
-            synchronized (lock) {
-                return size;
-            }
+            return readClosed ? 0 : (int) (head - tail);
         }
     };
     final OutputStream out = new OutputStream() {
         public void write(final int b) throws IOException {
-            final Object lock = Pipe.this.lock;
-            synchronized (lock) {
-                if (writeClosed) {
-                    throw ControllerClientLogger.ROOT_LOGGER.streamWasClosed();
-                }
-                final byte[] buffer = Pipe.this.buffer;
-                final int bufLen = buffer.length;
-                while (size == bufLen) {
-                    try {
-                        lock.wait();
-                        if (writeClosed) {
-                            throw ControllerClientLogger.ROOT_LOGGER.streamWasClosed();
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new InterruptedIOException();
-                    }
-                }
-                final int tail = Pipe.this.tail;
-                int startPos = tail + size;
-                if (startPos >= bufLen) {
-                    buffer[startPos - bufLen] = (byte) b;
-                } else {
-                    buffer[startPos] = (byte) b;
-                }
-                size++;
-                lock.notifyAll();
-            }
+            awaitWritable(0);
+            final long head = Pipe.this.head;
+            buffer[(int) head & mask] = (byte) b;
+            Pipe.this.head = head + 1;
+            LockSupport.unpark(waitingReader);
         }
 
         public void write(final byte[] b, int off, final int len) throws IOException {
+            final byte[] buffer = Pipe.this.buffer;
             int remaining = len;
-            final Object lock = Pipe.this.lock;
-            synchronized (lock) {
-                if (writeClosed) {
-                    throw ControllerClientLogger.ROOT_LOGGER.streamWasClosed();
-                }
-                final byte[] buffer = Pipe.this.buffer;
-                final int bufLen = buffer.length;
-                int size;
-                int tail;
-                int cnt;
-                while (remaining > 0) {
-                    while ((size = Pipe.this.size) == bufLen) {
-                        try {
-                            lock.wait();
-                            if (writeClosed) {
-                                throw ControllerClientLogger.ROOT_LOGGER.streamWasClosed();
-                            }
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            final InterruptedIOException iioe = new InterruptedIOException();
-                            iioe.bytesTransferred = len - remaining;
-                            throw iioe;
-                        }
-                    }
-                    tail = Pipe.this.tail;
-                    int startPos = tail + size;
-                    if (startPos >= bufLen) {
-                        // read wraps, write doesn't
-                        startPos -= bufLen;
-                        cnt = Math.min(remaining, bufLen - size);
-                        System.arraycopy(b, off, buffer, startPos, cnt);
-                        remaining -= cnt;
-                        off += cnt;
-                    } else {
-                        // write wraps, read doesn't
-                        final int firstPart = Math.min(remaining, bufLen - (tail + size));
-                        System.arraycopy(b, off, buffer, startPos, firstPart);
-                        off += firstPart;
-                        remaining -= firstPart;
-                        if (remaining > 0) {
-                            final int latter = Math.min(remaining, tail);
-                            System.arraycopy(b, off, buffer, 0, latter);
-                            cnt = firstPart + latter;
-                            off += latter;
-                            remaining -= latter;
-                        } else {
-                            cnt = firstPart;
-                        }
-                    }
-                    Pipe.this.size += cnt;
-                    lock.notifyAll();
+            while (remaining > 0) {
+                final int free = awaitWritable(len - remaining);
+                final long head = Pipe.this.head;
+                final int cnt = Math.min(remaining, free);
+                final int pos = (int) head & mask;
+                final int firstPart = Math.min(cnt, buffer.length - pos);
+                System.arraycopy(b, off, buffer, pos, firstPart);
+                if (firstPart < cnt) {
+                    // wrapped
+                    System.arraycopy(b, off + firstPart, buffer, 0, cnt - firstPart);
                 }
+                off += cnt;
+                remaining -= cnt;
+                Pipe.this.head = head + cnt;
+                LockSupport.unpark(waitingReader);
             }
         }
 
         public void close() throws IOException {
-            final Object lock = Pipe.this.lock;
-            synchronized (lock) {
-                writeClosed = true;
-                lock.notifyAll();
-            }
+            closeWrite();
         }
     };
 
@@ -0,0 +1,503 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.ModelControllerClientConfiguration;
+import org.jboss.as.controller.client.ModelNodeVisitor;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.as.controller.client.ResponseProjection;
+import org.jboss.as.controller.client.logging.ControllerClientLogger;
+import org.jboss.as.protocol.StreamUtils;
+import org.jboss.dmr.ModelNode;
+
+/**
+ * {@link ModelControllerClient} which spreads the operations across several connections to the same host.
+ * <p>
+ * Each member of the pool is a {@link RemotingModelControllerClient} with its own connection and management channel. All
+ * members share one reference counted remoting endpoint and the executor of the configuration. An operation is dispatched to
+ * the member with the least operations in flight, so that small operations are not blocked behind large responses on the same
+ * channel. An {@link OperationResponse} counts as in flight until it's closed, since its attached streams are read from the
+ * channel of its member.
+ */
+public class PooledModelControllerClient implements ModelControllerClient {
+
+    /**
+     * Creates a pooled client.
+     *
+     * @param configuration the client configuration, shared by all members of the pool
+     * @param size the number of connections
+     * @return the client
+     */
+    public static PooledModelControllerClient create(final ModelControllerClientConfiguration configuration,
+            final int size) {
+        if (size < 1) {
+            throw ControllerClientLogger.ROOT_LOGGER.invalidValue("size", size, 0);
+        }
+        return new PooledModelControllerClient(configuration, size);
+    }
+
+    private final ModelControllerClientConfiguration configuration;
+    private final Member[] members;
+    private final AtomicInteger next;
+    private final SingleFlight singleFlight;
+
+    private PooledModelControllerClient(final ModelControllerClientConfiguration configuration, final int size) {
+        this.configuration = configuration;
+        this.members = new Member[size];
+        this.next = new AtomicInteger();
+        this.singleFlight = new SingleFlight();
+        final ModelControllerClientConfiguration memberConfiguration = new MemberConfiguration(configuration);
+        for (int i = 0; i < size; i++) {
+            members[i] = new Member(i, RemotingModelControllerClient.create(memberConfiguration));
+        }
+    }
+
+    @Override
+    public ModelNode execute(final ModelNode operation) throws IOException {
+        final OperationKey key = coalescingKey(operation, OperationMessageHandler.DISCARD);
+        if (key != null) {
+            return executeCoalesced(key, Operation.Factory.create(operation), OperationMessageHandler.DISCARD);
+        }
+        final Member member = acquire();
+        try {
+            return member.client.execute(operation);
+        } finally {
+            member.release();
+        }
+    }
+
+    @Override
+    public ModelNode execute(final Operation operation) throws IOException {
+        final OperationKey key = coalescingKey(operation, OperationMessageHandler.DISCARD);
+        if (key != null) {
+            return executeCoalesced(key, operation, OperationMessageHandler.DISCARD);
+        }
+        final Member member = acquire();
+        try {
+            return member.client.execute(operation);
+        } finally {
+            member.release();
+        }
+    }
+
+    @Override
+    public ModelNode execute(final ModelNode operation, final OperationMessageHandler messageHandler)
+            throws IOException {
+        final OperationKey key = coalescingKey(operation, messageHandler);
+        if (key != null) {
+            return executeCoalesced(key, Operation.Factory.create(operation), messageHandler);
+        }
+        final Member member = acquire();
+        try {
+            return member.client.execute(operation, messageHandler);
+        } finally {
+            member.release();
+        }
+    }
+
+    @Override
+    public ModelNode execute(final Operation operation, final OperationMessageHandler messageHandler)
+            throws IOException {
+        final OperationKey key = coalescingKey(operation, messageHandler);
+        if (key != null) {
+            return executeCoalesced(key, operation, messageHandler);
+        }
+        final Member member = acquire();
+        try {
+            return member.client.execute(operation, messageHandler);
+        } finally {
+            member.release();
+        }
+    }
+
+    @Override
+    public OperationResponse executeOperation(final Operation operation, final OperationMessageHandler messageHandler)
+            throws IOException {
+        final Member member = acquire();
+        final OperationResponse response;
+        try {
+            response = member.client.executeOperation(operation, messageHandler);
+        } catch (IOException | RuntimeException e) {
+            member.release();
+            throw e;
+        }
+        return new MemberResponse(response, member);
+    }
+
+    @Override
+    public ModelNode executeProjected(final Operation operation, final OperationMessageHandler messageHandler,
+            final ResponseProjection projection) throws IOException {
+        final Member member = acquire();
+        try {
+            return member.client.executeProjected(operation, messageHandler, projection);
+        } finally {
+            member.release();
+        }
+    }
+
+    @Override
+    public void executeStreaming(final Operation operation, final OperationMessageHandler messageHandler,
+            final ModelNodeVisitor visitor) throws IOException {
+        final Member member = acquire();
+        try {
+            member.client.executeStreaming(operation, messageHandler, visitor);
+        } finally {
+            member.release();
+        }
+    }
+
+    @Override
+    public CompletionStage<ModelNode> executeAsync(final Operation operation,
+            final OperationMessageHandler messageHandler) {
+        final OperationKey key = coalescingKey(operation, messageHandler);
+        if (key != null) {
+            return singleFlight.execute(key, () -> executeOnMember(operation, messageHandler).toCompletableFuture());
+        }
+        return executeOnMember(operation, messageHandler);
+    }
+
+    private CompletionStage<ModelNode> executeOnMember(final Operation operation,
+            final OperationMessageHandler messageHandler) {
+        final Member member = acquire();
+        final CompletionStage<ModelNode> stage;
+        try {
+            stage = member.client.executeAsync(operation, messageHandler);
+        } catch (RuntimeException e) {
+            member.release();
+            throw e;
+        }
+        // return the original stage, so that cancelling it cancels the operation
+        stage.whenComplete((result, failure) -> member.release());
+        return stage;
+    }
+
+    @Override
+    public CompletionStage<OperationResponse> executeOperationAsync(final Operation operation,
+            final OperationMessageHandler messageHandler) {
+        final Member member = acquire();
+        final CompletableFuture<OperationResponse> stage;
+        try {
+            stage = member.client.executeOperationAsync(operation, messageHandler).toCompletableFuture();
+        } catch (RuntimeException e) {
+            member.release();
+            throw e;
+        }
+        final CompletableFuture<OperationResponse> result = new CompletableFuture<>();
+        stage.whenComplete((response, failure) -> {
+            if (failure != null) {
+                member.release();
+                result.completeExceptionally(failure);
+                return;
+            }
+            final OperationResponse memberResponse = new MemberResponse(response, member);
+            if (!result.complete(memberResponse)) {
+                // nobody will see the response of a cancelled stage
+                StreamUtils.safeClose(memberResponse);
+            }
+        });
+        result.whenComplete((response, failure) -> {
+            if (result.isCancelled()) {
+                stage.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the utilization of the connections in the pool.
+     *
+     * @return the statistics per connection
+     */
+    public List<ChannelStatistics> getChannelStatistics() {
+        final List<ChannelStatistics> statistics = new ArrayList<>(members.length);
+        for (Member member : members) {
+            statistics.add(new ChannelStatistics(member.index, member.inFlight.get(), member.peakInFlight.get(),
+                    member.completed.get()));
+        }
+        return Collections.unmodifiableList(statistics);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Member member : members) {
+                StreamUtils.safeClose(member.client);
+            }
+        } finally {
+            configuration.close();
+        }
+    }
+
+    /**
+     * Returns the key of a read-only operation which shares its request with identical operations in flight.
+     *
+     * @param operation the operation
+     * @param messageHandler the message handler of the caller
+     * @return the key, or {@code null} if the operation is executed on its own
+     */
+    private OperationKey coalescingKey(final Operation operation, final OperationMessageHandler messageHandler) {
+        return configuration.isCoalesceReadOperations() ? SingleFlight.keyOf(operation, messageHandler) : null;
+    }
+
+    private OperationKey coalescingKey(final ModelNode operation, final OperationMessageHandler messageHandler) {
+        return configuration.isCoalesceReadOperations() ? SingleFlight.keyOf(operation, messageHandler) : null;
+    }
+
+    private ModelNode executeCoalesced(final OperationKey key, final Operation operation,
+            final OperationMessageHandler messageHandler) throws IOException {
+        try {
+            return singleFlight.execute(key, () -> executeOnMember(operation, messageHandler).toCompletableFuture()).get();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Member acquire() {
+        // start at a rotating offset, so that idle members are used in turn
+        final int length = members.length;
+        final int start = Math.floorMod(next.getAndIncrement(), length);
+        Member least = members[start];
+        int leastInFlight = least.inFlight.get();
+        for (int i = 1; i < length && leastInFlight > 0; i++) {
+            final Member member = members[(start + i) % length];
+            final int inFlight = member.inFlight.get();
+            if (inFlight < leastInFlight) {
+                least = member;
+                leastInFlight = inFlight;
+            }
+        }
+        least.acquire();
+        return least;
+    }
+
+    private static final class Member {
+
+        private final int index;
+        private final ModelControllerClient client;
+        private final AtomicInteger inFlight;
+        private final AtomicInteger peakInFlight;
+        private final AtomicLong completed;
+
+        private Member(int index, ModelControllerClient client) {
+            this.index = index;
+            this.client = client;
+            this.inFlight = new AtomicInteger();
+            this.peakInFlight = new AtomicInteger();
+            this.completed = new AtomicLong();
+        }
+
+        private void acquire() {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        }
+
+        private void release() {
+            inFlight.decrementAndGet();
+            completed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Keeps the member of a response in flight until the response is closed.
+     */
+    private static final class MemberResponse implements OperationResponse {
+
+        private final OperationResponse delegate;
+        private final Member member;
+        private final AtomicBoolean closed;
+
+        private MemberResponse(OperationResponse delegate, Member member) {
+            this.delegate = delegate;
+            this.member = member;
+            this.closed = new AtomicBoolean();
+        }
+
+        @Override
+        public ModelNode getResponseNode() {
+            return delegate.getResponseNode();
+        }
+
+        @Override
+        public List<StreamEntry> getInputStreams() {
+            return delegate.getInputStreams();
+        }
+
+        @Override
+        public StreamEntry getInputStream(String uuid) {
+            return delegate.getInputStream(uuid);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    delegate.close();
+                } finally {
+                    member.release();
+                }
+            }
+        }
+    }
+
+    /** The utilization of one connection of the pool. */
+    public static final class ChannelStatistics {
+
+        private final int index;
+        private final int inFlight;
+        private final int peakInFlight;
+        private final long completed;
+
+        private ChannelStatistics(int index, int inFlight, int peakInFlight, long completed) {
+            this.index = index;
+            this.inFlight = inFlight;
+            this.peakInFlight = peakInFlight;
+            this.completed = completed;
+        }
+
+        /**
+         * @return the index of the connection in the pool
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the number of operations currently in flight
+         */
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return the highest number of operations in flight at the same time
+         */
+        public int getPeakInFlight() {
+            return peakInFlight;
+        }
+
+        /**
+         * @return the number of completed operations
+         */
+        public long getCompleted() {
+            return completed;
+        }
+
+        @Override
+        public String toString() {
+            return "ChannelStatistics(index=" + index + ", inFlight=" + inFlight + ", peakInFlight=" + peakInFlight
+                    + ", completed=" + completed + ")";
+        }
+    }
+
+    /**
+     * The configuration of the members. The members share the remoting endpoint and leave closing the configuration (and its
+     * executor) to the pool.
+     */
+    private static final class MemberConfiguration implements ModelControllerClientConfiguration {
+
+        private final ModelControllerClientConfiguration delegate;
+
+        private MemberConfiguration(ModelControllerClientConfiguration delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getHost() {
+            return delegate.getHost();
+        }
+
+        @Override
+        public int getPort() {
+            return delegate.getPort();
+        }
+
+        @Override
+        public String getProtocol() {
+            return delegate.getProtocol();
+        }
+
+        @Override
+        public int getConnectionTimeout() {
+            return delegate.getConnectionTimeout();
+        }
+
+        @Override
+        public CallbackHandler getCallbackHandler() {
+            return delegate.getCallbackHandler();
+        }
+
+        @Override
+        public ExecutorService getExecutor() {
+            return delegate.getExecutor();
+        }
+
+        @Override
+        public String getClientBindAddress() {
+            return delegate.getClientBindAddress();
+        }
+
+        @Override
+        public boolean isSharedEndpoint() {
+            return true;
+        }
+
+        @Override
+        public int getWorkerIoThreads() {
+            return delegate.getWorkerIoThreads();
+        }
+
+        @Override
+        public int getWorkerTaskThreads() {
+            return delegate.getWorkerTaskThreads();
+        }
+
+        @Override
+        public int getResponseStreamBufferSize() {
+            return delegate.getResponseStreamBufferSize();
+        }
+
+        @Override
+        public int getResponseStreamReadAhead() {
+            return delegate.getResponseStreamReadAhead();
+        }
+
+        @Override
+        public boolean isCoalesceReadOperations() {
+            // coalesced by the pool, before an operation is dispatched to a member
+            return false;
+        }
+
+        @Override
+        public void close() {
+            //
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jboss.as.controller.client.logging.ControllerClientLogger;
+import org.jboss.as.protocol.StreamUtils;
+
+/**
+ * A buffer between an input stream and an output stream whose writer never blocks. Used to read response streams ahead of their
+ * consumers.
+ * <p>
+ * Messages of a management channel are handled one after another. A writer blocking on a full {@link Pipe} would hold up all
+ * other messages, including the data of other streams. Instead this buffer keeps up to {@code memorySize} bytes in a ring
+ * buffer and spills only the bytes which don't fit to a temporary file. Once the reader has consumed all spilled bytes the file
+ * is reused from its start, so the size of the file is bounded by how far the reader falls behind rather than by the size of
+ * the stream. The file is deleted when the input side is closed.
+ */
+final class ReadAheadBuffer {
+
+    private final Object lock = new Object();
+    private final byte[] memory;
+    /** the index of the next byte to read from memory **/
+    private int head;
+    /** the number of bytes in memory **/
+    private int buffered;
+    /** the position of the next byte to read from the file **/
+    private long fileRead;
+    /**
+     * the position of the next byte to write to the file, the bytes between fileRead and fileWritten follow those in memory
+     **/
+    private long fileWritten;
+    /** the total number of bytes written **/
+    private long written;
+    /** the total number of bytes read **/
+    private long read;
+    private Path file;
+    private FileChannel channel;
+    private boolean writeClosed;
+    private boolean readClosed;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param memorySize the number of bytes kept in memory
+     */
+    ReadAheadBuffer(int memorySize) {
+        if (memorySize < 1) {
+            throw ControllerClientLogger.ROOT_LOGGER.invalidValue("memorySize", memorySize, 0);
+        }
+        memory = new byte[memorySize];
+    }
+
+    private final InputStream in = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            final int cnt = read(b, 0, 1);
+            return cnt == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final long position;
+            final int cnt;
+            final FileChannel channel;
+            synchronized (lock) {
+                while (!readClosed && read == written && !writeClosed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (readClosed || read == written) {
+                    return -1;
+                }
+                if (len == 0) {
+                    return 0;
+                }
+                if (buffered > 0) {
+                    // the bytes in memory precede the spilled ones
+                    final int n = Math.min(len, Math.min(buffered, memory.length - head));
+                    System.arraycopy(memory, head, b, off, n);
+                    head = (head + n) % memory.length;
+                    buffered -= n;
+                    read += n;
+                    return n;
+                }
+                position = fileRead;
+                cnt = (int) Math.min(len, fileWritten - fileRead);
+                channel = ReadAheadBuffer.this.channel;
+            }
+            // the spilled bytes up to fileWritten are complete and are not reused before they are read
+            final int n = channel.read(ByteBuffer.wrap(b, off, cnt), position);
+            synchronized (lock) {
+                fileRead += n;
+                read += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            synchronized (lock) {
+                return readClosed ? 0 : (int) Math.min(Integer.MAX_VALUE, written - read);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            final FileChannel channel;
+            final Path file;
+            synchronized (lock) {
+                writeClosed = true;
+                readClosed = true;
+                channel = ReadAheadBuffer.this.channel;
+                file = ReadAheadBuffer.this.file;
+                ReadAheadBuffer.this.channel = null;
+                ReadAheadBuffer.this.file = null;
+                lock.notifyAll();
+            }
+            StreamUtils.safeClose(channel);
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    ControllerClientLogger.ROOT_LOGGER.cannotDeleteTempFile(file.getFileName().toString());
+                    file.toFile().deleteOnExit();
+                }
+            }
+        }
+    };
+
+    private final OutputStream out = new OutputStream() {
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            final long position;
+            final FileChannel channel;
+            synchronized (lock) {
+                if (writeClosed) {
+                    throw ControllerClientLogger.ROOT_LOGGER.streamWasClosed();
+                }
+                if (fileRead == fileWritten) {
+                    // the reader consumed all spilled bytes, so the memory can be used again and the file from its start
+                    fileRead = 0;
+                    fileWritten = 0;
+                    while (len > 0 && buffered < memory.length) {
+                        final int tail = (head + buffered) % memory.length;
+                        final int cnt = Math.min(len, Math.min(memory.length - buffered, memory.length - tail));
+                        System.arraycopy(b, off, memory, tail, cnt);
+                        buffered += cnt;
+                        written += cnt;
+                        off += cnt;
+                        len -= cnt;
+                    }
+                    lock.notifyAll();
+                }
+                if (len == 0) {
+                    return;
+                }
+                if (ReadAheadBuffer.this.channel == null) {
+                    file = Files.createTempFile("client", "stream");
+                    ReadAheadBuffer.this.channel = FileChannel.open(file, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+                }
+                channel = ReadAheadBuffer.this.channel;
+                position = fileWritten;
+            }
+            // only the writer appends to the file, so write without holding the lock
+            final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            long pos = position;
+            while (buffer.hasRemaining()) {
+                pos += channel.write(buffer, pos);
+            }
+            synchronized (lock) {
+                fileWritten += len;
+                written += len;
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                writeClosed = true;
+                lock.notifyAll();
+            }
+        }
+    };
+
+    /**
+     * Get the input (read) side of the buffer.
+     *
+     * @return the input side
+     */
+    InputStream getIn() {
+        return in;
+    }
+
+    /**
+     * Get the output (write) side of the buffer.
+     *
+     * @return the output side
+     */
+    OutputStream getOut() {
+        return out;
+    }
+}
@@ -18,6 +18,7 @@ package org.jboss.as.controller.client.impl;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.jboss.as.controller.client.ModelControllerClient;
@@ -53,7 +54,20 @@ public class RemotingModelControllerClient extends AbstractModelControllerClient
     };
 
     public static RemotingModelControllerClient create(final ModelControllerClientConfiguration configuration) {
-        RemotingModelControllerClient client = new RemotingModelControllerClient(configuration);
+        return create(configuration, null);
+    }
+
+    /**
+     * Creates a client which opens its connection using the given endpoint. The endpoint is owned by the caller and is not
+     * closed when the client is closed. This allows many clients to share the I/O threads of one endpoint.
+     *
+     * @param configuration the client configuration
+     * @param endpoint the endpoint to use, or {@code null} to create an endpoint owned by the client
+     * @return the client
+     */
+    public static RemotingModelControllerClient create(final ModelControllerClientConfiguration configuration,
+            final Endpoint endpoint) {
+        RemotingModelControllerClient client = new RemotingModelControllerClient(configuration, endpoint);
         // Use a PhantomReference instead of overriding finalize() to ensure close gets called
         // CleanerReference handles ensuring there's a strong ref to itself so we can just construct it and move on
         new CleanerReference<>(client, client.closeable, REAPER);
@@ -63,6 +77,10 @@ public class RemotingModelControllerClient extends AbstractModelControllerClient
     private final ClientCloseable closeable;
 
     RemotingModelControllerClient(final ModelControllerClientConfiguration configuration) {
+        this(configuration, null);
+    }
+
+    RemotingModelControllerClient(final ModelControllerClientConfiguration configuration, final Endpoint endpoint) {
 
         ManagementChannelHandler handler = new ManagementChannelHandler(new ManagementClientChannelStrategy() {
             @Override
@@ -75,7 +93,7 @@ public class RemotingModelControllerClient extends AbstractModelControllerClient
                 //
             }
         }, configuration.getExecutor(), this);
-        this.closeable = new ClientCloseable(handler, configuration, Thread.currentThread().getStackTrace());
+        this.closeable = new ClientCloseable(handler, configuration, endpoint, Thread.currentThread().getStackTrace());
     }
 
     @Override
@@ -83,6 +101,27 @@ public class RemotingModelControllerClient extends AbstractModelControllerClient
         return closeable.channelAssociation;
     }
 
+    @Override
+    protected int getResponseStreamBufferSize() {
+        final int size = closeable.clientConfiguration.getResponseStreamBufferSize();
+        return size > 0 ? size : super.getResponseStreamBufferSize();
+    }
+
+    @Override
+    protected int getResponseStreamReadAhead() {
+        return closeable.clientConfiguration.getResponseStreamReadAhead();
+    }
+
+    @Override
+    protected Executor getExecutor() {
+        return closeable.clientConfiguration.getExecutor();
+    }
+
+    @Override
+    protected boolean isCoalesceReadOperations() {
+        return closeable.clientConfiguration.isCoalesceReadOperations();
+    }
+
     @Override
     public void close() throws IOException {
         closeable.close();
@@ -96,10 +135,20 @@ public class RemotingModelControllerClient extends AbstractModelControllerClient
             if (closeable.strategy == null) {
                 try {
 
-                    closeable.endpoint = Endpoint.builder().setEndpointName("management-client").build();
+                    final ModelControllerClientConfiguration clientConfiguration = closeable.clientConfiguration;
+                    final Endpoint endpoint;
+                    if (closeable.externalEndpoint != null) {
+                        endpoint = closeable.externalEndpoint;
+                    } else if (clientConfiguration.isSharedEndpoint()) {
+                        endpoint = closeable.sharedEndpoint = ManagementClientEndpoints.acquire(
+                                clientConfiguration.getWorkerIoThreads(), clientConfiguration.getWorkerTaskThreads());
+                    } else {
+                        endpoint = closeable.endpoint = ManagementClientEndpoints.create(
+                                clientConfiguration.getWorkerIoThreads(), clientConfiguration.getWorkerTaskThreads());
+                    }
 
                     final ProtocolConnectionConfiguration configuration = ProtocolConfigurationFactory.create(
-                            closeable.clientConfiguration, closeable.endpoint);
+                            closeable.clientConfiguration, endpoint);
 
                     closeable.strategy = ManagementClientChannelStrategy.create(configuration,
                             closeable.channelAssociation, closeable.clientConfiguration.getCallbackHandler(),
@@ -107,8 +156,10 @@ public class RemotingModelControllerClient extends AbstractModelControllerClient
                             null,
                             closeable.channelAssociation::handleChannelClosed);
                 } catch (RuntimeException e) {
+                    closeable.releaseEndpoint();
                     throw e;
                 } catch (Exception e) {
+                    closeable.releaseEndpoint();
                     throw new RuntimeException(e);
                 }
             }
@@ -119,21 +170,44 @@ public class RemotingModelControllerClient extends AbstractModelControllerClient
     private static final class ClientCloseable implements Closeable {
 
         private Endpoint endpoint;
+        private Endpoint sharedEndpoint;
         private ManagementClientChannelStrategy strategy;
         private boolean closed;
 
         private final ManagementChannelHandler channelAssociation;
         private final ModelControllerClientConfiguration clientConfiguration;
+        private final Endpoint externalEndpoint;
         private final StackTraceElement[] allocationStackTrace;
 
         private ClientCloseable(ManagementChannelHandler channelAssociation,
                 ModelControllerClientConfiguration clientConfiguration,
+                Endpoint externalEndpoint,
                 StackTraceElement[] allocationStackTrace) {
             this.channelAssociation = channelAssociation;
             this.clientConfiguration = clientConfiguration;
+            this.externalEndpoint = externalEndpoint;
             this.allocationStackTrace = allocationStackTrace;
         }
 
+        /**
+         * Releases the endpoint acquired for a channel which could not be created, the next attempt acquires it again.
+         */
+        private void releaseEndpoint() {
+            releaseSharedEndpoint();
+            final Endpoint endpoint = this.endpoint;
+            if (endpoint != null) {
+                this.endpoint = null;
+                StreamUtils.safeClose(endpoint);
+            }
+        }
+
+        private void releaseSharedEndpoint() {
+            if (sharedEndpoint != null) {
+                ManagementClientEndpoints.release(sharedEndpoint);
+                sharedEndpoint = null;
+            }
+        }
+
         @Override
         public void close() throws IOException {
             synchronized (this) {
@@ -148,7 +222,9 @@ public class RemotingModelControllerClient extends AbstractModelControllerClient
                     StreamUtils.safeClose(strategy);
                     strategy = null;
                 }
-                // Then the endpoint
+                // Then release a shared endpoint, the last client closes it asynchronously
+                releaseSharedEndpoint();
+                // Then the endpoint, unless it is owned by someone else
                 final Endpoint endpoint = this.endpoint;
                 if (endpoint != null) {
                     this.endpoint = null;
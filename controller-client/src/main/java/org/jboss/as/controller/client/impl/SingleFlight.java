@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Coalesces identical read-only operations. While an operation is in flight, callers executing an operation with the same
+ * {@link OperationKey key} attach to the pending execution instead of sending another request. Each caller receives its own
+ * copy of the response.
+ * <p>
+ * Cancelling the future of a caller detaches the caller. The pending execution is only cancelled when every attached caller has
+ * cancelled its future.
+ */
+final class SingleFlight {
+
+    /**
+     * Starts the execution shared by the callers of a flight.
+     */
+    interface Execution {
+
+        CompletableFuture<ModelNode> start() throws IOException;
+    }
+
+    private final ConcurrentMap<OperationKey, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the key under which an operation can share its execution.
+     *
+     * @param operation the operation
+     * @param messageHandler the message handler of the caller
+     * @return the key, or {@code null} if the operation modifies the model, has attachments, isn't valid or the caller expects
+     *         progress messages
+     */
+    static OperationKey keyOf(final Operation operation, final OperationMessageHandler messageHandler) {
+        if (!operation.getInputStreams().isEmpty()) {
+            return null;
+        }
+        return keyOf(operation.getOperation(), messageHandler);
+    }
+
+    /**
+     * Returns the key under which an operation without attachments can share its execution.
+     *
+     * @param operation the operation
+     * @param messageHandler the message handler of the caller
+     * @return the key, or {@code null} if the operation modifies the model, isn't valid or the caller expects progress messages
+     */
+    static OperationKey keyOf(final ModelNode operation, final OperationMessageHandler messageHandler) {
+        // attached callers receive no progress messages
+        if (messageHandler != null && messageHandler != OperationMessageHandler.DISCARD) {
+            return null;
+        }
+        return OperationKey.isReadOnly(operation, OperationKey.READ_ONLY_OPERATIONS) ? OperationKey.of(operation) : null;
+    }
+
+    /**
+     * Attaches to the pending execution of the key, or starts a new execution if none is in flight.
+     *
+     * @param key the key of the operation
+     * @param execution starts the execution if no execution is in flight
+     * @return the future of this caller
+     */
+    CompletableFuture<ModelNode> execute(final OperationKey key, final Execution execution) {
+        for (;;) {
+            Flight flight = flights.get(key);
+            boolean leader = false;
+            if (flight == null) {
+                final Flight created = new Flight(key);
+                flight = flights.putIfAbsent(key, created);
+                if (flight == null) {
+                    flight = created;
+                    leader = true;
+                }
+            }
+            final CompletableFuture<ModelNode> future = flight.attach();
+            if (future == null) {
+                // every caller of the flight cancelled, start over
+                continue;
+            }
+            if (leader) {
+                flight.start(execution);
+            }
+            return future;
+        }
+    }
+
+    private final class Flight {
+
+        private final OperationKey key;
+        private final CompletableFuture<ModelNode> response = new CompletableFuture<>();
+        private CompletableFuture<ModelNode> source;
+        private int callers;
+        private boolean abandoned;
+
+        private Flight(final OperationKey key) {
+            this.key = key;
+        }
+
+        private synchronized CompletableFuture<ModelNode> attach() {
+            if (abandoned) {
+                return null;
+            }
+            callers++;
+            final CompletableFuture<ModelNode> future = response.thenApply(ModelNode::clone);
+            future.whenComplete((result, failure) -> {
+                if (future.isCancelled()) {
+                    detach();
+                }
+            });
+            return future;
+        }
+
+        private void detach() {
+            final CompletableFuture<ModelNode> cancel;
+            synchronized (this) {
+                if (--callers > 0 || response.isDone()) {
+                    return;
+                }
+                abandoned = true;
+                cancel = source;
+            }
+            flights.remove(key, this);
+            if (cancel != null) {
+                cancel.cancel(true);
+            }
+        }
+
+        private void start(final Execution execution) {
+            final CompletableFuture<ModelNode> started;
+            try {
+                started = execution.start();
+            } catch (IOException | RuntimeException e) {
+                complete(null, e);
+                return;
+            }
+            final boolean cancel;
+            synchronized (this) {
+                source = started;
+                cancel = abandoned;
+            }
+            if (cancel) {
+                started.cancel(true);
+            }
+            started.whenComplete(this::complete);
+        }
+
+        private void complete(final ModelNode result, final Throwable failure) {
+            // later callers must not attach to a completed flight, they would miss changes made in the meantime
+            flights.remove(key, this);
+            if (failure != null) {
+                response.completeExceptionally(failure);
+            } else {
+                response.complete(result);
+            }
+        }
+    }
+}
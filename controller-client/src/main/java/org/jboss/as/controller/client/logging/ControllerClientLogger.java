@@ -302,6 +302,42 @@ public interface ControllerClientLogger extends BasicLogger {
     @Message(id = 37, value = "Failed to parse the configuration file: %s")
     RuntimeException failedToParseAuthenticationConfig(@Cause Throwable cause, URI location);
 
+    /**
+     * Creates an exception indicating an attachment is too large to be sent to the server.
+     *
+     * @param size the size of the attachment.
+     * @param maxSize the maximum size.
+     * @return an {@link IOException} for the error.
+     */
+    @Message(id = 38, value = "Attachment has %d bytes which exceeds the maximum of %d bytes the management protocol can transfer")
+    IOException attachmentTooLarge(long size, int maxSize);
+
+    /**
+     * Creates an exception indicating an unknown type was read while decoding a DMR node.
+     *
+     * @param type the type character.
+     * @return an {@link IOException} for the error.
+     */
+    @Message(id = 40, value = "Invalid type read: %s")
+    IOException invalidModelType(char type);
+
+    /**
+     * Creates an exception indicating an operation is not a composite operation.
+     *
+     * @param name the name of the operation.
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 41, value = "Operation %s is not a composite operation")
+    IllegalArgumentException notCompositeOperation(String name);
+
+    /**
+     * Creates an exception indicating a response stream was transferred by the thread which receives its data.
+     *
+     * @return an {@link IllegalStateException} for the error.
+     */
+    @Message(id = 42, value = "A response stream cannot be transferred by the thread receiving management messages, it would wait for data only that thread can receive")
+    IllegalStateException transferOnReceiveThread();
+
     class LeakDescription extends Throwable {
 
         private static final long serialVersionUID = -7193498784746897578L;
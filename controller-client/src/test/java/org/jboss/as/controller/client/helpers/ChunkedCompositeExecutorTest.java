@@ -0,0 +1,306 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import static org.jboss.as.controller.client.helpers.ClientConstants.CANCELLED;
+import static org.jboss.as.controller.client.helpers.ClientConstants.COMPOSITE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.FAILED;
+import static org.jboss.as.controller.client.helpers.ClientConstants.FAILURE_DESCRIPTION;
+import static org.jboss.as.controller.client.helpers.ClientConstants.NAME;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OPERATION_HEADERS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OUTCOME;
+import static org.jboss.as.controller.client.helpers.ClientConstants.RESPONSE_HEADERS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.RESULT;
+import static org.jboss.as.controller.client.helpers.ClientConstants.STEPS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.SUCCESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkedCompositeExecutorTest {
+
+    private final FakeClient client = new FakeClient();
+
+    @Test
+    void stepsAreSplitAndMergedInOrder() throws IOException {
+        final ModelNode composite = composite(10);
+        composite.get(OPERATION_HEADERS, "blocking-timeout").set(5);
+        client.responder = operation -> {
+            final ModelNode response = respond(operation);
+            response.get(RESPONSE_HEADERS, "chunk-" + client.executed.size()).set(true);
+            return CompletableFuture.completedFuture(response);
+        };
+        final ModelNode response = ChunkedCompositeExecutor.builder(client).setMaxSteps(3).build().execute(composite);
+
+        assertEquals(Arrays.asList(3, 3, 3, 1), chunkSizes());
+        for (ModelNode chunk : client.executed) {
+            assertEquals(composite.get(OPERATION_HEADERS), chunk.get(OPERATION_HEADERS));
+        }
+        assertEquals(SUCCESS, response.get(OUTCOME).asString());
+        assertEquals(10, response.get(RESULT).keys().size());
+        for (int i = 1; i <= 10; i++) {
+            assertEquals("attribute-" + i, response.get(RESULT, "step-" + i, RESULT).asString());
+        }
+        assertEquals(4, response.get(RESPONSE_HEADERS).keys().size());
+    }
+
+    @Test
+    void compositeWhichFitsIntoOneChunkIsExecutedAsIs() throws IOException {
+        final ModelNode composite = composite(3);
+        final ModelNode response = ChunkedCompositeExecutor.builder(client).setMaxSteps(3).build().execute(composite);
+        assertEquals(Collections.singletonList(composite), client.executed);
+        assertEquals("attribute-3", response.get(RESULT, "step-3", RESULT).asString());
+    }
+
+    @Test
+    void chunksAreBoundedBySize() throws IOException {
+        final Random random = new Random(3);
+        final ModelNode composite = composite(200);
+        for (ModelNode step : composite.get(STEPS).asList()) {
+            // a few steps are larger than a chunk
+            final char[] value = new char[random.nextInt(20) == 0 ? 10_000 : random.nextInt(3_000)];
+            Arrays.fill(value, 'v');
+            step.get("value").set(new String(value));
+        }
+        final long maxBytes = 8_000;
+        final ModelNode response = ChunkedCompositeExecutor.builder(client).setMaxBytes(maxBytes).build()
+                .execute(composite);
+        assertEquals(SUCCESS, response.get(OUTCOME).asString());
+        assertEquals(200, response.get(RESULT).keys().size());
+
+        final List<ModelNode> steps = new ArrayList<>();
+        for (int i = 0; i < client.executed.size(); i++) {
+            final List<ModelNode> chunk = client.executed.get(i).get(STEPS).asList();
+            steps.addAll(chunk);
+            long bytes = 0;
+            for (ModelNode step : chunk) {
+                bytes += size(step);
+            }
+            assertTrue(bytes <= maxBytes || chunk.size() == 1, "chunk " + i + " has " + bytes + " bytes");
+            if (i + 1 < client.executed.size()) {
+                // the chunk is only closed if the next step doesn't fit
+                final ModelNode first = client.executed.get(i + 1).get(STEPS).get(0);
+                assertTrue(bytes + size(first) > maxBytes, "chunk " + i + " has room for the next step");
+            }
+        }
+        assertEquals(composite.get(STEPS).asList(), steps);
+    }
+
+    @Test
+    void remainingChunksAreNotSentAfterAFailedChunk() throws IOException {
+        // the second chunk fails as a whole without step results, the third chunk has a failed step
+        client.responder = operation -> {
+            final int chunk = client.executed.size();
+            if (chunk == 2) {
+                final ModelNode failed = new ModelNode();
+                failed.get(OUTCOME).set(FAILED);
+                failed.get(FAILURE_DESCRIPTION).set("Duplicate resource");
+                return CompletableFuture.completedFuture(failed);
+            }
+            final ModelNode response = respond(operation);
+            if (chunk == 3) {
+                response.get(OUTCOME).set(FAILED);
+                response.get(FAILURE_DESCRIPTION).set("Operation failed");
+                response.get(RESULT, "step-1", OUTCOME).set(FAILED);
+                response.get(RESULT, "step-1", FAILURE_DESCRIPTION).set("No such attribute");
+            }
+            return CompletableFuture.completedFuture(response);
+        };
+        final ModelNode composite = composite(8);
+        final ModelNode response = ChunkedCompositeExecutor.builder(client).setMaxSteps(2).build().execute(composite);
+
+        assertEquals(2, client.executed.size());
+        assertEquals(FAILED, response.get(OUTCOME).asString());
+        assertEquals("attribute-2", response.get(RESULT, "step-2", RESULT).asString());
+        // the failure of the chunk is reported for each of its steps
+        for (String step : new String[] { "step-3", "step-4" }) {
+            assertEquals(FAILED, response.get(RESULT, step, OUTCOME).asString());
+            assertEquals("Duplicate resource", response.get(RESULT, step, FAILURE_DESCRIPTION).asString());
+        }
+        for (int i = 5; i <= 8; i++) {
+            assertEquals(CANCELLED, response.get(RESULT, "step-" + i, OUTCOME).asString());
+        }
+        assertEquals(Arrays.asList("step-3", "step-4"), new ArrayList<>(response.get(FAILURE_DESCRIPTION).keys()));
+
+        client.executed.clear();
+        final ModelNode continued = ChunkedCompositeExecutor.builder(client).setMaxSteps(2).setContinueOnFailure(true)
+                .build().execute(composite);
+        assertEquals(4, client.executed.size());
+        assertEquals(FAILED, continued.get(OUTCOME).asString());
+        assertEquals("No such attribute", continued.get(RESULT, "step-5", FAILURE_DESCRIPTION).asString());
+        assertEquals("attribute-6", continued.get(RESULT, "step-6", RESULT).asString());
+        assertEquals("attribute-8", continued.get(RESULT, "step-8", RESULT).asString());
+        assertEquals(Arrays.asList("step-3", "step-4", "step-5"), new ArrayList<>(continued.get(FAILURE_DESCRIPTION).keys()));
+    }
+
+    @Test
+    void concurrentChunksAreMergedInStepOrder() throws Exception {
+        final List<CompletableFuture<ModelNode>> pending = Collections.synchronizedList(new ArrayList<>());
+        client.responder = operation -> {
+            final CompletableFuture<ModelNode> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        };
+        final ModelNode composite = composite(10);
+        final CompletableFuture<ModelNode> response = ChunkedCompositeExecutor.builder(client)
+                .setMaxSteps(2)
+                .setMaxConcurrentChunks(3)
+                .setExecutor(Runnable::run)
+                .build()
+                .executeAsync(Operation.Factory.create(composite))
+                .toCompletableFuture();
+        assertEquals(3, pending.size());
+        // completing a chunk sends the next one
+        complete(pending, 2);
+        assertEquals(4, pending.size());
+        complete(pending, 1);
+        complete(pending, 3);
+        complete(pending, 0);
+        assertFalse(response.isDone());
+        complete(pending, 4);
+
+        final ModelNode merged = response.get();
+        assertEquals(SUCCESS, merged.get(OUTCOME).asString());
+        for (int i = 1; i <= 10; i++) {
+            assertEquals("attribute-" + i, merged.get(RESULT, "step-" + i, RESULT).asString());
+        }
+    }
+
+    @Test
+    void concurrentChunksStopAfterAFailedChunk() throws ExecutionException, InterruptedException {
+        final List<CompletableFuture<ModelNode>> pending = Collections.synchronizedList(new ArrayList<>());
+        client.responder = operation -> {
+            final CompletableFuture<ModelNode> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        };
+        final CompletableFuture<ModelNode> response = ChunkedCompositeExecutor.builder(client)
+                .setMaxSteps(2)
+                .setMaxConcurrentChunks(2)
+                .setExecutor(Runnable::run)
+                .build()
+                .executeAsync(Operation.Factory.create(composite(8)))
+                .toCompletableFuture();
+        final ModelNode failed = new ModelNode();
+        failed.get(OUTCOME).set(FAILED);
+        failed.get(FAILURE_DESCRIPTION).set("Duplicate resource");
+        pending.get(0).complete(failed);
+        // the chunk in flight completes, no further chunk is sent
+        assertFalse(response.isDone());
+        complete(pending, 1);
+        assertEquals(2, pending.size());
+
+        final ModelNode merged = response.get();
+        assertEquals(FAILED, merged.get(RESULT, "step-1", OUTCOME).asString());
+        assertEquals("attribute-4", merged.get(RESULT, "step-4", RESULT).asString());
+        assertEquals(CANCELLED, merged.get(RESULT, "step-5", OUTCOME).asString());
+        assertEquals(CANCELLED, merged.get(RESULT, "step-8", OUTCOME).asString());
+    }
+
+    private void complete(final List<CompletableFuture<ModelNode>> pending, final int chunk) {
+        pending.get(chunk).complete(respond(client.executed.get(chunk)));
+    }
+
+    private List<Integer> chunkSizes() {
+        final List<Integer> sizes = new ArrayList<>();
+        for (ModelNode chunk : client.executed) {
+            sizes.add(chunk.get(STEPS).asList().size());
+        }
+        return sizes;
+    }
+
+    private static ModelNode composite(final int steps) {
+        final ModelNode composite = Operations.createOperation(COMPOSITE);
+        for (int i = 1; i <= steps; i++) {
+            final ModelNode step = Operations.createOperation("read-attribute");
+            step.get(NAME).set("attribute-" + i);
+            composite.get(STEPS).add(step);
+        }
+        return composite;
+    }
+
+    /**
+     * Answers every step of a composite with the name of the attribute it reads.
+     */
+    private static ModelNode respond(final ModelNode composite) {
+        final ModelNode response = new ModelNode();
+        response.get(OUTCOME).set(SUCCESS);
+        int i = 1;
+        for (ModelNode step : composite.get(STEPS).asList()) {
+            final ModelNode stepResponse = response.get(RESULT, "step-" + i++);
+            stepResponse.get(OUTCOME).set(SUCCESS);
+            stepResponse.get(RESULT).set(step.get(NAME));
+        }
+        return response;
+    }
+
+    private static long size(final ModelNode step) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            step.writeExternal(out);
+        }
+        return bytes.size();
+    }
+
+    private static class FakeClient implements ModelControllerClient {
+
+        private final List<ModelNode> executed = Collections.synchronizedList(new ArrayList<>());
+        private volatile Function<ModelNode, CompletableFuture<ModelNode>> responder = operation -> CompletableFuture
+                .completedFuture(respond(operation));
+
+        @Override
+        public CompletionStage<ModelNode> executeAsync(final Operation operation,
+                final OperationMessageHandler messageHandler) {
+            executed.add(operation.getOperation().clone());
+            return responder.apply(operation.getOperation());
+        }
+
+        @Override
+        public OperationResponse executeOperation(final Operation operation, final OperationMessageHandler messageHandler)
+                throws IOException {
+            try {
+                return OperationResponse.Factory
+                        .createSimple(executeAsync(operation, messageHandler).toCompletableFuture().get());
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import static org.jboss.as.controller.client.helpers.ClientConstants.COMPOSITE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.FAILED;
+import static org.jboss.as.controller.client.helpers.ClientConstants.FAILURE_DESCRIPTION;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OP;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OPERATION_HEADERS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OUTCOME;
+import static org.jboss.as.controller.client.helpers.ClientConstants.RESULT;
+import static org.jboss.as.controller.client.helpers.ClientConstants.ROLLBACK_ON_RUNTIME_FAILURE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.STEPS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.SUCCESS;
+import static org.jboss.as.controller.client.impl.OperationKeyTest.operation;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchingModelControllerClientTest {
+
+    private static final ModelNode LOGGING = operation("read-resource", "subsystem", "logging");
+    private static final ModelNode IO = operation("read-resource", "subsystem", "io");
+    private static final ModelNode MISSING = operation("read-resource", "subsystem", "missing");
+    private static final ModelNode JMX = operation("read-resource", "subsystem", "jmx");
+
+    private final FakeClient delegate = new FakeClient();
+
+    @Test
+    void operationsWithinTheWindowAreSentAsOneComposite() throws Exception {
+        final BatchingModelControllerClient client = BatchingModelControllerClient.builder(delegate)
+                .setWindow(20, TimeUnit.MILLISECONDS)
+                .build();
+        final CompletableFuture<ModelNode> logging = client.executeAsync(LOGGING).toCompletableFuture();
+        final CompletableFuture<ModelNode> io = client.executeAsync(IO).toCompletableFuture();
+        final CompletableFuture<ModelNode> jmx = client.executeAsync(JMX).toCompletableFuture();
+        assertEquals(response("logging"), logging.get(10, TimeUnit.SECONDS));
+        assertEquals(response("io"), io.get(10, TimeUnit.SECONDS));
+        assertEquals(response("jmx"), jmx.get(10, TimeUnit.SECONDS));
+
+        assertEquals(1, delegate.executed.size());
+        final ModelNode composite = delegate.executed.get(0);
+        assertEquals(COMPOSITE, composite.get(OP).asString());
+        assertEquals(List.of(LOGGING, IO, JMX), composite.get(STEPS).asList());
+        assertFalse(composite.get(OPERATION_HEADERS, ROLLBACK_ON_RUNTIME_FAILURE).asBoolean());
+        assertEquals("BatchStatistics(batches=1, operations=3)", client.getStatistics().toString());
+        client.close();
+        assertTrue(delegate.closed);
+    }
+
+    @Test
+    void batchIsSentWhenItIsFull() throws Exception {
+        final BatchingModelControllerClient client = BatchingModelControllerClient.builder(delegate)
+                .setWindow(1, TimeUnit.HOURS)
+                .setMaxBatchSize(2)
+                .build();
+        final CompletableFuture<ModelNode> logging = client.executeAsync(LOGGING).toCompletableFuture();
+        assertEquals(response("io"), client.execute(IO));
+        assertEquals(response("logging"), logging.get());
+        assertEquals(1, delegate.executed.size());
+
+        // operations which are not batched are executed right away
+        final ModelNode write = operation("write-attribute", "subsystem", "logging");
+        final ModelNode withHeaders = IO.clone();
+        withHeaders.get(OPERATION_HEADERS, "blocking-timeout").set(5);
+        client.execute(write);
+        client.execute(withHeaders);
+        client.execute(LOGGING, (severity, message) -> {
+        });
+        assertEquals(List.of(write, withHeaders, LOGGING), delegate.executed.subList(1, 4));
+        assertEquals("BatchStatistics(batches=1, operations=2)", client.getStatistics().toString());
+        client.close();
+    }
+
+    @Test
+    void stepsWithoutFailureOfTheirOwnAreExecutedAlone() throws Exception {
+        delegate.responder = operation -> {
+            if (!COMPOSITE.equals(operation.get(OP).asString())) {
+                return CompletableFuture.completedFuture(respond(operation));
+            }
+            // the missing resource fails the model stage and rolls back the composite, the step after it isn't executed
+            final ModelNode response = new ModelNode();
+            response.get(OUTCOME).set(FAILED);
+            response.get(FAILURE_DESCRIPTION).set("Composite operation failed and was rolled back");
+            response.get(RESULT, "step-1", OUTCOME).set(FAILED);
+            response.get(RESULT, "step-1", "rolled-back").set(true);
+            response.get(RESULT, "step-2").set(respond(MISSING));
+            response.get(RESULT, "step-2", "rolled-back").set(true);
+            return CompletableFuture.completedFuture(response);
+        };
+        final BatchingModelControllerClient client = BatchingModelControllerClient.builder(delegate)
+                .setWindow(1, TimeUnit.HOURS)
+                .setMaxBatchSize(3)
+                .build();
+        final CompletableFuture<ModelNode> logging = client.executeAsync(LOGGING).toCompletableFuture();
+        final CompletableFuture<ModelNode> missing = client.executeAsync(MISSING).toCompletableFuture();
+        final CompletableFuture<ModelNode> io = client.executeAsync(IO).toCompletableFuture();
+
+        assertEquals(response("logging"), logging.get());
+        final ModelNode failure = missing.get();
+        assertEquals(FAILED, failure.get(OUTCOME).asString());
+        assertEquals("not found", failure.get(FAILURE_DESCRIPTION).asString());
+        assertEquals(response("io"), io.get());
+        assertEquals(List.of(LOGGING, IO), delegate.executed.subList(1, 3));
+        assertEquals(3, delegate.executed.size());
+        client.close();
+    }
+
+    @Test
+    void transportFailureFailsEveryOperation() throws IOException {
+        final IOException failure = new IOException("connection lost");
+        delegate.responder = operation -> CompletableFuture.failedFuture(failure);
+        final BatchingModelControllerClient client = BatchingModelControllerClient.builder(delegate)
+                .setWindow(1, TimeUnit.HOURS)
+                .setMaxBatchSize(2)
+                .build();
+        final CompletableFuture<ModelNode> logging = client.executeAsync(LOGGING).toCompletableFuture();
+        final CompletableFuture<ModelNode> io = client.executeAsync(IO).toCompletableFuture();
+        assertSame(failure, assertThrows(ExecutionException.class, logging::get).getCause());
+        assertSame(failure, assertThrows(ExecutionException.class, io::get).getCause());
+        // the operations are not executed again
+        assertEquals(1, delegate.executed.size());
+        client.close();
+    }
+
+    @Test
+    void cancelledOperationsAreWithdrawnBeforeTheFlush() throws Exception {
+        final BatchingModelControllerClient client = BatchingModelControllerClient.builder(delegate)
+                .setWindow(1, TimeUnit.HOURS)
+                .setMaxBatchSize(3)
+                .build();
+        final CompletableFuture<ModelNode> logging = client.executeAsync(LOGGING).toCompletableFuture();
+        final CompletableFuture<ModelNode> missing = client.executeAsync(MISSING).toCompletableFuture();
+        assertTrue(missing.cancel(true));
+        assertTrue(delegate.executed.isEmpty());
+        // the cancelled operation doesn't count towards the size of the batch
+        final CompletableFuture<ModelNode> io = client.executeAsync(IO).toCompletableFuture();
+        assertTrue(delegate.executed.isEmpty());
+        final CompletableFuture<ModelNode> jmx = client.executeAsync(JMX).toCompletableFuture();
+
+        assertEquals(response("logging"), logging.get());
+        assertEquals(response("io"), io.get());
+        assertEquals(response("jmx"), jmx.get());
+        assertEquals(1, delegate.executed.size());
+        assertEquals(List.of(LOGGING, IO, JMX), delegate.executed.get(0).get(STEPS).asList());
+        assertEquals("BatchStatistics(batches=1, operations=3)", client.getStatistics().toString());
+        client.close();
+    }
+
+    @Test
+    void closeFailsThePendingBatch() throws Exception {
+        final BatchingModelControllerClient client = BatchingModelControllerClient.builder(delegate)
+                .setWindow(1, TimeUnit.HOURS)
+                .build();
+        final CompletableFuture<ModelNode> logging = client.executeAsync(LOGGING).toCompletableFuture();
+        final CompletableFuture<ModelNode> io = client.executeAsync(IO).toCompletableFuture();
+        client.close();
+        assertInstanceOf(IllegalStateException.class, assertThrows(ExecutionException.class, logging::get).getCause());
+        assertInstanceOf(IllegalStateException.class, assertThrows(ExecutionException.class, io::get).getCause());
+        assertTrue(delegate.closed);
+
+        final CompletableFuture<ModelNode> late = client.executeAsync(JMX).toCompletableFuture();
+        assertInstanceOf(IllegalStateException.class, assertThrows(ExecutionException.class, late::get).getCause());
+        assertTrue(delegate.executed.isEmpty());
+        assertEquals("BatchStatistics(batches=0, operations=0)", client.getStatistics().toString());
+    }
+
+    private static ModelNode response(final String subsystem) {
+        final ModelNode response = new ModelNode();
+        response.get(OUTCOME).set(SUCCESS);
+        response.get(RESULT).set(subsystem);
+        return response;
+    }
+
+    /**
+     * Answers a read of the {@code missing} subsystem with a failure, any other operation with the name of its subsystem.
+     */
+    private static ModelNode respond(final ModelNode operation) {
+        final String subsystem = operation.get("address").asList().isEmpty() ? ""
+                : operation.get("address").get(0).get("subsystem").asString();
+        if ("missing".equals(subsystem)) {
+            final ModelNode response = new ModelNode();
+            response.get(OUTCOME).set(FAILED);
+            response.get(FAILURE_DESCRIPTION).set("not found");
+            return response;
+        }
+        return response(subsystem);
+    }
+
+    private static class FakeClient implements ModelControllerClient {
+
+        private final List<ModelNode> executed = new ArrayList<>();
+        private volatile Function<ModelNode, CompletableFuture<ModelNode>> responder = operation -> {
+            if (!COMPOSITE.equals(operation.get(OP).asString())) {
+                return CompletableFuture.completedFuture(respond(operation));
+            }
+            final ModelNode response = new ModelNode();
+            response.get(OUTCOME).set(SUCCESS);
+            int step = 1;
+            for (ModelNode operationStep : operation.get(STEPS).asList()) {
+                response.get(RESULT, "step-" + step++).set(respond(operationStep));
+            }
+            return CompletableFuture.completedFuture(response);
+        };
+        private volatile boolean closed;
+
+        @Override
+        public CompletionStage<ModelNode> executeAsync(final Operation operation,
+                final OperationMessageHandler messageHandler) {
+            synchronized (executed) {
+                executed.add(operation.getOperation().clone());
+            }
+            return responder.apply(operation.getOperation());
+        }
+
+        @Override
+        public OperationResponse executeOperation(final Operation operation, final OperationMessageHandler messageHandler)
+                throws IOException {
+            try {
+                return OperationResponse.Factory
+                        .createSimple(executeAsync(operation, messageHandler).toCompletableFuture().get());
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
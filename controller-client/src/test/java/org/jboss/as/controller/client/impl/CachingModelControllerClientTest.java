@@ -0,0 +1,305 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.as.controller.client.impl.CachingModelControllerClient.CacheStatistics;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import static org.jboss.as.controller.client.helpers.ClientConstants.COMPOSITE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.FAILURE_DESCRIPTION;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OP;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OUTCOME;
+import static org.jboss.as.controller.client.helpers.ClientConstants.RESULT;
+import static org.jboss.as.controller.client.helpers.ClientConstants.STEPS;
+import static org.jboss.as.controller.client.helpers.ClientConstants.SUCCESS;
+import static org.jboss.as.controller.client.impl.OperationKeyTest.operation;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingModelControllerClientTest {
+
+    private static final ModelNode LOGGING = operation("read-resource", "subsystem", "logging");
+    private static final ModelNode CONSOLE = operation("read-resource", "subsystem", "logging", "handler", "console");
+    private static final ModelNode FILTER = operation("read-resource", "subsystem", "logging", "handler", "console",
+            "filter", "f");
+    private static final ModelNode FILE = operation("read-resource", "subsystem", "logging", "handler", "file");
+    private static final ModelNode HANDLERS = operation("read-resource", "subsystem", "*", "handler", "*");
+    private static final ModelNode IO = operation("read-resource", "subsystem", "io");
+
+    private final FakeClient delegate = new FakeClient();
+
+    @Test
+    void readsAreServedFromTheCache() throws IOException {
+        final CachingModelControllerClient client = CachingModelControllerClient.builder(delegate).build();
+        final ModelNode first = client.execute(LOGGING);
+        final ModelNode second = client.execute(LOGGING);
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        // modifying a response doesn't modify the cached one
+        second.get(RESULT).set("modified");
+        assertEquals(first, client.execute(LOGGING));
+        assertEquals(1, delegate.executions(LOGGING));
+        assertStatistics(client, 2, 1, 0, 0, 1);
+
+        client.close();
+        assertTrue(delegate.closed);
+    }
+
+    @Test
+    void writesInvalidateOverlappingAddresses() throws IOException {
+        final CachingModelControllerClient client = CachingModelControllerClient.builder(delegate).build();
+        for (ModelNode read : new ModelNode[] { LOGGING, CONSOLE, FILTER, FILE, HANDLERS, IO }) {
+            client.execute(read);
+        }
+        assertStatistics(client, 0, 6, 0, 0, 6);
+
+        // invalidates the parent, the address itself, the child and the wildcard address, but not the siblings
+        client.execute(operation("write-attribute", "subsystem", "logging", "handler", "console"));
+        assertStatistics(client, 0, 6, 0, 4, 2);
+        for (ModelNode read : new ModelNode[] { LOGGING, CONSOLE, FILTER, FILE, HANDLERS, IO }) {
+            client.execute(read);
+        }
+        assertEquals(2, delegate.executions(LOGGING));
+        assertEquals(2, delegate.executions(CONSOLE));
+        assertEquals(2, delegate.executions(FILTER));
+        assertEquals(2, delegate.executions(HANDLERS));
+        assertEquals(1, delegate.executions(FILE));
+        assertEquals(1, delegate.executions(IO));
+
+        // a write with a wildcard address
+        client.execute(operation("undefine-attribute", "subsystem", "*", "handler", "file"));
+        assertStatistics(client, 2, 10, 0, 8, 2);
+        client.invalidateAll();
+        assertStatistics(client, 2, 10, 0, 10, 0);
+    }
+
+    @Test
+    void compositesWithWriteStepsAreNotCached() throws IOException {
+        final CachingModelControllerClient client = CachingModelControllerClient.builder(delegate).build();
+        final ModelNode reads = operation(COMPOSITE);
+        reads.get(STEPS).add(LOGGING);
+        reads.get(STEPS).add(IO);
+        client.execute(reads);
+        client.execute(reads);
+        assertEquals(1, delegate.executions(reads));
+        client.execute(IO);
+
+        final ModelNode writes = operation(COMPOSITE);
+        writes.get(STEPS).add(LOGGING);
+        writes.get(STEPS).add(operation("write-attribute", "subsystem", "io", "worker", "default"));
+        client.execute(writes);
+        client.execute(writes);
+        assertEquals(2, delegate.executions(writes));
+        // the composite of reads has the root address, so it overlaps with every modification
+        assertStatistics(client, 1, 2, 0, 2, 0);
+        client.execute(LOGGING);
+        client.execute(LOGGING);
+        assertStatistics(client, 2, 3, 0, 2, 1);
+    }
+
+    @Test
+    void responseReadAcrossAModificationIsNotCached() throws Exception {
+        final CachingModelControllerClient client = CachingModelControllerClient.builder(delegate).build();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        delegate.releaseRead = release;
+        delegate.readStarted = started;
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<ModelNode> read = executor.submit(() -> client.execute(CONSOLE));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            // the write completes while the read is in flight, so the read may have seen the model before the write
+            client.execute(operation("write-attribute", "subsystem", "logging", "handler", "console"));
+            release.countDown();
+            read.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertStatistics(client, 0, 1, 0, 0, 0);
+        client.execute(CONSOLE);
+        client.execute(CONSOLE);
+        assertEquals(2, delegate.executions(CONSOLE));
+        assertStatistics(client, 1, 2, 0, 0, 1);
+    }
+
+    @Test
+    void asyncResponseReadAcrossAModificationIsNotCached() throws Exception {
+        final CachingModelControllerClient client = CachingModelControllerClient.builder(delegate).build();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        delegate.releaseRead = release;
+        delegate.readStarted = started;
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<ModelNode> read = executor.submit(() -> client.executeAsync(CONSOLE).toCompletableFuture().get());
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            client.execute(operation("add", "subsystem", "logging", "handler", "console", "filter", "f"));
+            release.countDown();
+            read.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertStatistics(client, 0, 1, 0, 0, 0);
+    }
+
+    @Test
+    void failedResponsesAreNotCached() throws IOException {
+        final CachingModelControllerClient client = CachingModelControllerClient.builder(delegate).build();
+        final ModelNode failing = operation("read-resource", "subsystem", "missing");
+        client.execute(failing);
+        client.execute(failing);
+        assertEquals(2, delegate.executions(failing));
+        assertStatistics(client, 0, 2, 0, 0, 0);
+    }
+
+    @Test
+    void responsesExpire() throws Exception {
+        final ModelNode custom = operation("list-log-files", "subsystem", "logging");
+        final CachingModelControllerClient client = CachingModelControllerClient.builder(delegate)
+                .setTimeToLive(50, TimeUnit.MILLISECONDS)
+                .setTimeToLive("read-resource-description", 0, TimeUnit.MILLISECONDS)
+                .setTimeToLive(custom.get(OP).asString(), 1, TimeUnit.HOURS)
+                .build();
+        client.execute(LOGGING);
+        client.execute(custom);
+        client.execute(LOGGING);
+        client.execute(custom);
+        assertEquals(1, delegate.executions(LOGGING));
+        assertEquals(1, delegate.executions(custom));
+        Thread.sleep(100);
+        client.execute(LOGGING);
+        client.execute(custom);
+        assertEquals(2, delegate.executions(LOGGING));
+        assertEquals(1, delegate.executions(custom));
+
+        // a time to live of zero disables caching
+        final ModelNode description = operation("read-resource-description", "subsystem", "logging");
+        client.execute(description);
+        client.execute(description);
+        assertEquals(2, delegate.executions(description));
+        // a composite lives as long as its shortest lived step
+        final ModelNode composite = operation(COMPOSITE);
+        composite.get(STEPS).add(custom);
+        composite.get(STEPS).add(LOGGING);
+        client.execute(composite);
+        client.execute(composite);
+        assertEquals(1, delegate.executions(composite));
+        Thread.sleep(100);
+        client.execute(composite);
+        assertEquals(2, delegate.executions(composite));
+        composite.get(STEPS).add(description);
+        client.execute(composite);
+        client.execute(composite);
+        assertEquals(2, delegate.executions(composite));
+        assertStatistics(client, 4, 5, 0, 0, 3);
+    }
+
+    @Test
+    void leastRecentlyUsedResponseIsEvicted() throws IOException {
+        final CachingModelControllerClient client = CachingModelControllerClient.builder(delegate).setMaxEntries(2).build();
+        client.execute(LOGGING);
+        client.execute(IO);
+        // makes the logging subsystem the most recently used entry
+        client.execute(LOGGING);
+        client.execute(CONSOLE);
+        assertStatistics(client, 1, 3, 1, 0, 2);
+        client.execute(LOGGING);
+        client.execute(CONSOLE);
+        client.execute(IO);
+        assertEquals(1, delegate.executions(LOGGING));
+        assertEquals(1, delegate.executions(CONSOLE));
+        assertEquals(2, delegate.executions(IO));
+        assertStatistics(client, 3, 4, 2, 0, 2);
+    }
+
+    private static void assertStatistics(final CachingModelControllerClient client, final long hits, final long misses,
+            final long evictions, final long invalidations, final int size) {
+        final CacheStatistics statistics = client.getStatistics();
+        assertEquals("CacheStatistics(hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", invalidations="
+                + invalidations + ", size=" + size + ")", statistics.toString());
+    }
+
+    /** Answers reads of the {@code missing} subsystem with a failure, all other operations successfully. */
+    private static class FakeClient implements ModelControllerClient {
+
+        private final List<ModelNode> executed = new ArrayList<>();
+        private volatile boolean closed;
+        /** if set, the next read blocks until it is released */
+        private volatile CountDownLatch readStarted;
+        private volatile CountDownLatch releaseRead;
+
+        @Override
+        public ModelNode execute(final Operation operation, final OperationMessageHandler messageHandler) throws IOException {
+            final ModelNode node = operation.getOperation();
+            final int count;
+            synchronized (executed) {
+                executed.add(node.clone());
+                count = executed.size();
+            }
+            final CountDownLatch started = readStarted;
+            if (started != null && OperationKey.isReadOnly(node, OperationKey.READ_ONLY_OPERATIONS)) {
+                readStarted = null;
+                started.countDown();
+                try {
+                    releaseRead.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            final ModelNode response = new ModelNode();
+            if (node.toString().contains("missing")) {
+                response.get(OUTCOME).set("failed");
+                response.get(FAILURE_DESCRIPTION).set("not found");
+            } else {
+                response.get(OUTCOME).set(SUCCESS);
+                response.get(RESULT).set(count);
+            }
+            return response;
+        }
+
+        @Override
+        public OperationResponse executeOperation(final Operation operation, final OperationMessageHandler messageHandler)
+                throws IOException {
+            return OperationResponse.Factory.createSimple(execute(operation, messageHandler));
+        }
+
+        int executions(final ModelNode operation) {
+            synchronized (executed) {
+                return (int) executed.stream().filter(operation::equals).count();
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.as.controller.client.ModelNodeVisitor;
+import org.jboss.as.controller.client.ResponseProjection;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.ValueExpression;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelNodeDecoderTest {
+
+    @Test
+    void visitorReportsEveryModelType() throws IOException {
+        final ModelNode node = everyModelType();
+        assertEquals(events(node), decodeEvents(node));
+    }
+
+    @Test
+    void projectionReadsEveryModelType() throws IOException {
+        final ModelNode response = response(everyModelType());
+        assertEquals(response, ModelNodeDecoder.decode(input(response), ResponseProjection.of("")));
+    }
+
+    @Test
+    void projectionSkipsEveryModelType() throws IOException {
+        // every value of the skipped entry has to be skipped exactly to find the selected entry behind it
+        final ModelNode result = new ModelNode();
+        result.get("skipped").set(everyModelType());
+        result.get("selected").set("value");
+        final ModelNode expected = new ModelNode();
+        expected.get("selected").set("value");
+        assertEquals(response(expected), ModelNodeDecoder.decode(input(response(result)), ResponseProjection.of("selected")));
+    }
+
+    @Test
+    void longStrings() throws IOException {
+        for (String value : new String[] { longString('a', 65_536), longString('\u00e9', 40_000),
+                longString('\u20ac', 30_000), longString('\0', 40_000), mixedLongString() }) {
+            final ModelNode node = new ModelNode();
+            node.get("long").set(value);
+            node.get("after").set(true);
+            assertTrue(encode(node).length > 65_535);
+            assertEquals(events(node), decodeEvents(node));
+
+            final ModelNode response = response(node);
+            assertEquals(response, ModelNodeDecoder.decode(input(response), ResponseProjection.of("")));
+            final ModelNode expected = new ModelNode();
+            expected.get("after").set(true);
+            assertEquals(response(expected), ModelNodeDecoder.decode(input(response), ResponseProjection.of("after")));
+        }
+    }
+
+    private static ModelNode everyModelType() {
+        final ModelNode node = new ModelNode();
+        node.get("big-decimal").set(new BigDecimal("-12345678901234567890.0987654321"));
+        node.get("big-integer").set(new BigInteger("-123456789012345678901234567890"));
+        node.get("boolean").set(true);
+        node.get("bytes").set(new byte[] { 0, 1, -1, 127, -128 });
+        node.get("empty-bytes").set(new byte[0]);
+        node.get("double").set(-1.5e300);
+        node.get("expression").set(new ValueExpression("${jboss.server.name:default}"));
+        node.get("int").set(Integer.MIN_VALUE);
+        node.get("long").set(Long.MAX_VALUE);
+        node.get("string").set("caf\u00e9 \u20ac \0");
+        node.get("empty-string").set("");
+        node.get("property").set("name", new ModelNode().set(42));
+        node.get("undefined");
+        node.get("empty-object").setEmptyObject();
+        node.get("empty-list").setEmptyList();
+        final ModelNode list = node.get("list");
+        for (ModelType type : ModelType.values()) {
+            list.add().set(type);
+        }
+        list.add().get("nested").add().set("key", new ModelNode().setEmptyList());
+        return node;
+    }
+
+    private static String longString(final char c, final int length) {
+        final char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static String mixedLongString() {
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < 70_000) {
+            builder.append("a\u00e9\u20ac\0\uffff");
+        }
+        return builder.toString();
+    }
+
+    private static ModelNode response(final ModelNode result) {
+        final ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result").set(result);
+        return response;
+    }
+
+    private static List<Object> events(final ModelNode node) {
+        final Recorder recorder = new Recorder();
+        ModelNodeVisitor.walk(node, recorder);
+        return recorder.events;
+    }
+
+    private static List<Object> decodeEvents(final ModelNode node) throws IOException {
+        final Recorder recorder = new Recorder();
+        final DataInputStream input = input(node);
+        ModelNodeDecoder.decode(input, recorder);
+        assertEquals(-1, input.read());
+        return recorder.events;
+    }
+
+    private static DataInputStream input(final ModelNode node) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(encode(node)));
+    }
+
+    private static byte[] encode(final ModelNode node) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            node.writeExternal(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class Recorder implements ModelNodeVisitor {
+
+        private final List<Object> events = new ArrayList<>();
+
+        @Override
+        public void startObject(final int size) {
+            events.add("startObject " + size);
+        }
+
+        @Override
+        public void key(final String key) {
+            events.add("key " + key);
+        }
+
+        @Override
+        public void endObject() {
+            events.add("endObject");
+        }
+
+        @Override
+        public void startList(final int size) {
+            events.add("startList " + size);
+        }
+
+        @Override
+        public void endList() {
+            events.add("endList");
+        }
+
+        @Override
+        public void startProperty(final String name) {
+            events.add("startProperty " + name);
+        }
+
+        @Override
+        public void endProperty() {
+            events.add("endProperty");
+        }
+
+        @Override
+        public void value(final ModelNode value) {
+            events.add(value);
+        }
+    }
+}
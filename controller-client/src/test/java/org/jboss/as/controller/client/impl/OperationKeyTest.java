@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import static org.jboss.as.controller.client.helpers.ClientConstants.COMPOSITE;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OP;
+import static org.jboss.as.controller.client.helpers.ClientConstants.OP_ADDR;
+import static org.jboss.as.controller.client.helpers.ClientConstants.STEPS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OperationKeyTest {
+
+    @Test
+    void parameterOrderAndAddressFormatDontMatter() {
+        final ModelNode first = operation("read-attribute", "subsystem", "logging", "handler", "console");
+        first.get("name").set("level");
+        first.get("include-defaults").set(true);
+        final ModelNode second = new ModelNode();
+        second.get(OP).set("read-attribute");
+        second.get("include-defaults").set(true);
+        second.get("name").set("level");
+        // the address as a list of objects instead of properties
+        second.get(OP_ADDR).add().get("subsystem").set("logging");
+        second.get(OP_ADDR).add().get("handler").set("console");
+        assertEquals(OperationKey.of(first), OperationKey.of(second));
+        assertEquals(OperationKey.of(first).hashCode(), OperationKey.of(second).hashCode());
+
+        second.get("name").set("formatter");
+        assertNotEquals(OperationKey.of(first), OperationKey.of(second));
+        assertNotEquals(OperationKey.of(operation("read-resource", "subsystem", "logging")),
+                OperationKey.of(operation("read-resource", "subsystem", "io")));
+    }
+
+    @Test
+    void invalidOperationsHaveNoKey() {
+        assertNull(OperationKey.of(new ModelNode()));
+        final ModelNode operation = operation("read-resource");
+        operation.get(OP_ADDR).set("subsystem=logging");
+        assertNull(OperationKey.of(operation));
+    }
+
+    @Test
+    void overlappingAddresses() {
+        final OperationKey key = OperationKey.of(operation("read-resource", "subsystem", "logging", "handler", "console"));
+        // the same address, a parent and a child
+        assertTrue(key.overlaps(address("subsystem", "logging", "handler", "console")));
+        assertTrue(key.overlaps(address("subsystem", "logging")));
+        assertTrue(key.overlaps(address()));
+        assertTrue(key.overlaps(address("subsystem", "logging", "handler", "console", "filter", "f")));
+        // wildcards in the modified address
+        assertTrue(key.overlaps(address("subsystem", "*", "handler", "console")));
+        assertTrue(key.overlaps(address("subsystem", "logging", "*", "*")));
+        // siblings
+        assertFalse(key.overlaps(address("subsystem", "logging", "handler", "file")));
+        assertFalse(key.overlaps(address("subsystem", "io")));
+        assertFalse(key.overlaps(address("subsystem", "*", "logger", "*")));
+
+        // wildcards in the cached address
+        final OperationKey wildcard = OperationKey.of(operation("read-resource", "subsystem", "logging", "handler", "*"));
+        assertTrue(wildcard.overlaps(address("subsystem", "logging", "handler", "file")));
+        assertTrue(wildcard.overlaps(address("subsystem", "logging", "handler", "file", "filter", "f")));
+        assertFalse(wildcard.overlaps(address("subsystem", "io", "handler", "file")));
+    }
+
+    @Test
+    void compositesAreReadOnlyIfAllStepsAre() {
+        final ModelNode composite = operation(COMPOSITE);
+        composite.get(STEPS).add(operation("read-resource", "subsystem", "logging"));
+        composite.get(STEPS).add(operation("read-attribute", "subsystem", "io"));
+        assertTrue(OperationKey.isReadOnly(composite, OperationKey.READ_ONLY_OPERATIONS));
+
+        final List<String[]> addresses = new ArrayList<>();
+        OperationKey.collectModifiedAddresses(composite, OperationKey.READ_ONLY_OPERATIONS, addresses);
+        assertTrue(addresses.isEmpty());
+
+        final ModelNode nested = operation(COMPOSITE);
+        nested.get(STEPS).add(operation("write-attribute", "subsystem", "io", "worker", "default"));
+        composite.get(STEPS).add(nested);
+        composite.get(STEPS).add(operation("remove", "subsystem", "logging", "handler", "file"));
+        assertFalse(OperationKey.isReadOnly(composite, OperationKey.READ_ONLY_OPERATIONS));
+
+        OperationKey.collectModifiedAddresses(composite, OperationKey.READ_ONLY_OPERATIONS, addresses);
+        assertEquals(2, addresses.size());
+        assertArrayEquals(address("subsystem", "io", "worker", "default"), addresses.get(0));
+        assertArrayEquals(address("subsystem", "logging", "handler", "file"), addresses.get(1));
+    }
+
+    static ModelNode operation(final String name, final String... address) {
+        final ModelNode operation = new ModelNode();
+        operation.get(OP).set(name);
+        operation.get(OP_ADDR).setEmptyList();
+        for (int i = 0; i + 1 < address.length; i += 2) {
+            operation.get(OP_ADDR).add(address[i], address[i + 1]);
+        }
+        return operation;
+    }
+
+    private static String[] address(final String... segments) {
+        return segments;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReadAheadBufferTest {
+
+    @Test
+    void interleavedWritesAndReadsKeepTheOrder() throws Exception {
+        final ReadAheadBuffer buffer = new ReadAheadBuffer(16);
+        final InputStream in = buffer.getIn();
+        final OutputStream out = buffer.getOut();
+        final Random random = new Random(7);
+        long next = 0;
+        long expected = 0;
+        // writes larger than the memory spill, reads catching up let the memory and the file be reused
+        for (int i = 0; i < 200_000; i++) {
+            if (random.nextBoolean()) {
+                final byte[] b = new byte[random.nextInt(40)];
+                for (int j = 0; j < b.length; j++) {
+                    b[j] = (byte) next++;
+                }
+                out.write(b);
+            } else if (expected < next) {
+                final byte[] b = new byte[1 + random.nextInt(40)];
+                final int cnt = in.read(b, 0, b.length);
+                for (int j = 0; j < cnt; j++) {
+                    assertEquals((byte) expected++, b[j]);
+                }
+                assertEquals(next - expected, in.available());
+            }
+        }
+        out.close();
+        int b;
+        while ((b = in.read()) != -1) {
+            assertEquals((byte) expected++, (byte) b);
+        }
+        assertEquals(next, expected);
+        in.close();
+    }
+
+    @Test
+    void readerOnAnotherThread() throws Exception {
+        final ReadAheadBuffer buffer = new ReadAheadBuffer(4096);
+        final long size = 64L * 1024 * 1024;
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Long> reader = executor.submit(() -> {
+                final Random random = new Random(2);
+                final byte[] b = new byte[8192];
+                long expected = 0;
+                try (InputStream in = buffer.getIn()) {
+                    int cnt;
+                    while ((cnt = in.read(b, 0, 1 + random.nextInt(b.length))) != -1) {
+                        for (int j = 0; j < cnt; j++) {
+                            assertEquals((byte) (expected++ * 31), b[j]);
+                        }
+                        if (random.nextInt(1000) == 0) {
+                            // fall behind from time to time, so that the writer spills
+                            Thread.sleep(5);
+                        }
+                    }
+                }
+                return expected;
+            });
+            final Random random = new Random(1);
+            final byte[] b = new byte[16384];
+            long next = 0;
+            try (OutputStream out = buffer.getOut()) {
+                while (next < size) {
+                    final int cnt = 1 + random.nextInt(b.length);
+                    for (int j = 0; j < cnt; j++) {
+                        b[j] = (byte) (next++ * 31);
+                    }
+                    out.write(b, 0, cnt);
+                }
+            }
+            assertEquals(next, reader.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
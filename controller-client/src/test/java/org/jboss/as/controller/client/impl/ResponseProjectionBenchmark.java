@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.jboss.as.controller.client.ResponseProjection;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares reading a large {@code read-resource} response completely and applying a {@link ResponseProjection} afterwards with
+ * applying the projection while decoding. Run it with
+ *
+ * <pre>
+ * mvn test -pl controller-client -Dtest=ResponseProjectionBenchmark -Dbenchmark=true
+ * </pre>
+ *
+ * For every variant the fastest of several rounds is printed as milliseconds and allocated bytes per response.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ResponseProjectionBenchmark {
+
+    private static final int RESOURCES = 2_000;
+    private static final int ATTRIBUTES = 30;
+    private static final int DECODES = 20;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void decodeLargeResponse() throws IOException {
+        final ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        final ModelNode result = response.get("result");
+        for (int i = 0; i < RESOURCES; i++) {
+            final ModelNode resource = result.get("data-source", "ds-" + i);
+            for (int j = 0; j < ATTRIBUTES; j++) {
+                resource.get("attribute-" + j).set("value of attribute " + j + " of resource " + i);
+            }
+            resource.get("statistics", "pool", "active-count").set(i);
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            response.writeExternal(out);
+        }
+        final byte[] encoded = bytes.toByteArray();
+        final ResponseProjection projection = ResponseProjection.of("data-source/*/attribute-0",
+                "data-source/*/statistics/pool/active-count");
+        assertEquals(projection.apply(response), ModelNodeDecoder.decode(input(encoded), projection));
+
+        System.out.printf("response of %d bytes%n", encoded.length);
+        report("readExternal", () -> {
+            final ModelNode node = new ModelNode();
+            node.readExternal(input(encoded));
+        });
+        report("readExternal + apply", () -> {
+            final ModelNode node = new ModelNode();
+            node.readExternal(input(encoded));
+            projection.apply(node);
+        });
+        report("decode with projection", () -> ModelNodeDecoder.decode(input(encoded), projection));
+    }
+
+    private static void report(final String name, final Decode decode) throws IOException {
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        long nanos = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        // the first round warms up the code
+        for (int round = 0; round <= ROUNDS; round++) {
+            final long startBytes = bean.getThreadAllocatedBytes(thread);
+            final long start = System.nanoTime();
+            for (int i = 0; i < DECODES; i++) {
+                decode.run();
+            }
+            final long elapsed = System.nanoTime() - start;
+            final long used = bean.getThreadAllocatedBytes(thread) - startBytes;
+            if (round > 0) {
+                nanos = Math.min(nanos, elapsed);
+                allocated = Math.min(allocated, used);
+            }
+        }
+        System.out.printf("%-24s %8.2f ms/response %12d bytes/response%n", name, nanos / 1e6 / DECODES,
+                allocated / DECODES);
+    }
+
+    private static DataInputStream input(final byte[] encoded) {
+        return new DataInputStream(new ByteArrayInputStream(encoded));
+    }
+
+    private interface Decode {
+
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.as.controller.client.ResponseProjection;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the projection applied while decoding with {@link ResponseProjection#apply(ModelNode)}.
+ */
+class ResponseProjectionFuzzTest {
+
+    private static final String[] KEYS = { "a", "b", "c", "0", "1", "2", "\u00e9" };
+    private static final String[] SEGMENTS = { "a", "b", "c", "0", "1", "2", "\u00e9", ResponseProjection.WILDCARD,
+            ResponseProjection.WILDCARD };
+
+    @Test
+    void wildcardIsMergedIntoNamedChildren() throws IOException {
+        final ModelNode result = ModelNode.fromString("{\"a\" => {\"x\" => 1, \"y\" => 2, \"z\" => 3},"
+                + " \"b\" => {\"x\" => 4, \"y\" => 5}}");
+        final ModelNode expected = ModelNode.fromString("{\"a\" => {\"x\" => 1, \"y\" => 2}, \"b\" => {\"y\" => 5}}");
+        assertProjection(expected, result, "a/x", "*/y");
+    }
+
+    @Test
+    void listElementsAreSelectedByIndexAndCompacted() throws IOException {
+        final ModelNode result = ModelNode.fromString("[0, {\"n\" => 1}, {\"m\" => 2}, \"three\", {\"n\" => 4}]");
+        assertProjection(ModelNode.fromString("[{\"n\" => 1}, \"three\"]"), result, "1", "3");
+        // scalars are not selected by a deeper path, so they are removed and the following elements move up
+        assertProjection(ModelNode.fromString("[{\"n\" => 1}, {}, {\"n\" => 4}]"), result, "*/n");
+    }
+
+    @Test
+    void propertiesAreSelectedByName() throws IOException {
+        final ModelNode result = ModelNode.fromString("[(\"one\" => {\"x\" => 1, \"y\" => 2}), (\"two\" => {\"y\" => 3})]");
+        assertProjection(ModelNode.fromString("[(\"one\" => {\"x\" => 1})]"), result, "*/one/x");
+        assertProjection(ModelNode.fromString("[(\"one\" => {\"y\" => 2}), (\"two\" => {\"y\" => 3})]"), result, "*/*/y");
+    }
+
+    @Test
+    void randomTreesAndProjections() throws IOException {
+        for (int seed = 0; seed < 20_000; seed++) {
+            final Random random = new Random(seed);
+            final ModelNode response = new ModelNode();
+            response.get("outcome").set("success");
+            response.get("result").set(tree(random, 4));
+            if (random.nextBoolean()) {
+                response.get("response-headers", "process-state").set("reload-required");
+            }
+            final String[] paths = new String[1 + random.nextInt(3)];
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = path(random);
+            }
+            final ResponseProjection projection = ResponseProjection.of(paths);
+            assertEquals(projection.apply(response), decode(response, projection),
+                    "seed " + seed + ", " + projection + ", " + response);
+        }
+    }
+
+    private static void assertProjection(final ModelNode expectedResult, final ModelNode result, final String... paths)
+            throws IOException {
+        final ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        response.get("result").set(result);
+        final ModelNode expected = new ModelNode();
+        expected.get("outcome").set("success");
+        expected.get("result").set(expectedResult);
+        final ResponseProjection projection = ResponseProjection.of(paths);
+        assertEquals(expected, projection.apply(response));
+        assertEquals(expected, decode(response, projection));
+    }
+
+    private static ModelNode decode(final ModelNode response, final ResponseProjection projection) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            response.writeExternal(out);
+        }
+        return ModelNodeDecoder.decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), projection);
+    }
+
+    private static ModelNode tree(final Random random, final int depth) {
+        final ModelNode node = new ModelNode();
+        switch (depth == 0 ? 3 + random.nextInt(4) : random.nextInt(7)) {
+            case 0:
+            case 1: {
+                node.setEmptyObject();
+                final int size = random.nextInt(4);
+                for (int i = 0; i < size; i++) {
+                    node.get(KEYS[random.nextInt(KEYS.length)]).set(tree(random, depth - 1));
+                }
+                break;
+            }
+            case 2: {
+                node.setEmptyList();
+                final int size = random.nextInt(5);
+                for (int i = 0; i < size; i++) {
+                    if (random.nextInt(3) == 0) {
+                        node.add(KEYS[random.nextInt(KEYS.length)], tree(random, depth - 1));
+                    } else {
+                        node.add(tree(random, depth - 1));
+                    }
+                }
+                break;
+            }
+            case 3:
+                node.set(KEYS[random.nextInt(KEYS.length)], tree(random, Math.max(0, depth - 1)));
+                if (depth == 0) {
+                    node.set(KEYS[random.nextInt(KEYS.length)], new ModelNode(random.nextInt()));
+                }
+                break;
+            case 4:
+                node.set(random.nextInt(10));
+                break;
+            case 5:
+                node.set(KEYS[random.nextInt(KEYS.length)]);
+                break;
+            default:
+                // undefined
+                break;
+        }
+        return node;
+    }
+
+    private static String path(final Random random) {
+        final List<String> segments = new ArrayList<>();
+        final int length = random.nextInt(4);
+        for (int i = 0; i < length; i++) {
+            segments.add(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        return String.join("/", segments);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.controller.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.dmr.ModelNode;
+import org.junit.jupiter.api.Test;
+
+import static org.jboss.as.controller.client.impl.OperationKeyTest.operation;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private static final OperationKey KEY = OperationKey.of(operation("read-resource", "subsystem", "logging"));
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final List<CompletableFuture<ModelNode>> executions = Collections.synchronizedList(new ArrayList<>());
+    private final SingleFlight.Execution execution = () -> {
+        final CompletableFuture<ModelNode> source = new CompletableFuture<>();
+        executions.add(source);
+        return source;
+    };
+
+    @Test
+    void onlyReadOnlyOperationsWithoutProgressMessagesShareAnExecution() {
+        final ModelNode read = operation("read-resource", "subsystem", "logging");
+        assertEquals(KEY, SingleFlight.keyOf(read, null));
+        assertEquals(KEY, SingleFlight.keyOf(read, OperationMessageHandler.DISCARD));
+        assertNull(SingleFlight.keyOf(read, (severity, message) -> {
+        }));
+        assertNull(SingleFlight.keyOf(operation("write-attribute", "subsystem", "logging"), null));
+    }
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+        final int callers = 8;
+        final CyclicBarrier barrier = new CyclicBarrier(callers);
+        final ExecutorService executor = Executors.newFixedThreadPool(callers);
+        final List<CompletableFuture<ModelNode>> futures = new ArrayList<>();
+        try {
+            final List<Future<CompletableFuture<ModelNode>>> attached = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                attached.add(executor.submit(() -> {
+                    barrier.await();
+                    return singleFlight.execute(KEY, execution);
+                }));
+            }
+            for (Future<CompletableFuture<ModelNode>> future : attached) {
+                futures.add(future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, executions.size());
+
+        final ModelNode response = new ModelNode();
+        response.get("outcome").set("success");
+        executions.get(0).complete(response);
+        final Set<ModelNode> responses = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (CompletableFuture<ModelNode> future : futures) {
+            final ModelNode result = future.get();
+            assertEquals(response, result);
+            responses.add(result);
+        }
+        // every caller gets its own copy
+        assertEquals(callers, responses.size());
+        assertFalse(responses.contains(response));
+    }
+
+    @Test
+    void executionIsCancelledWhenTheLastCallerCancels() {
+        final CompletableFuture<ModelNode> first = singleFlight.execute(KEY, execution);
+        final CompletableFuture<ModelNode> second = singleFlight.execute(KEY, execution);
+        final CompletableFuture<ModelNode> third = singleFlight.execute(KEY, execution);
+        assertEquals(1, executions.size());
+        final CompletableFuture<ModelNode> source = executions.get(0);
+
+        first.cancel(true);
+        second.cancel(true);
+        assertFalse(source.isCancelled());
+        assertFalse(third.isDone());
+        third.cancel(true);
+        assertTrue(source.isCancelled());
+
+        // an abandoned flight isn't joined
+        final CompletableFuture<ModelNode> fourth = singleFlight.execute(KEY, execution);
+        assertEquals(2, executions.size());
+        executions.get(1).complete(new ModelNode("response"));
+        assertEquals(new ModelNode("response"), fourth.join());
+    }
+
+    @Test
+    void cancellingAfterCompletionDoesNotCancelTheExecution() {
+        final CompletableFuture<ModelNode> first = singleFlight.execute(KEY, execution);
+        final CompletableFuture<ModelNode> second = singleFlight.execute(KEY, execution);
+        executions.get(0).complete(new ModelNode("response"));
+        assertFalse(first.cancel(true));
+        assertEquals(new ModelNode("response"), second.join());
+        assertFalse(executions.get(0).isCancelled());
+    }
+
+    @Test
+    void completedFlightIsNotReused() {
+        final CompletableFuture<ModelNode> first = singleFlight.execute(KEY, execution);
+        executions.get(0).complete(new ModelNode("first"));
+        assertEquals(new ModelNode("first"), first.join());
+
+        final CompletableFuture<ModelNode> second = singleFlight.execute(KEY, execution);
+        assertEquals(2, executions.size());
+        assertFalse(second.isDone());
+        final IOException failure = new IOException("connection closed");
+        executions.get(1).completeExceptionally(failure);
+        final ExecutionException thrown = assertThrows(ExecutionException.class, second::get);
+        assertSame(failure, thrown.getCause());
+
+        final CompletableFuture<ModelNode> third = singleFlight.execute(KEY, execution);
+        assertEquals(3, executions.size());
+        assertFalse(third.isDone());
+    }
+
+    @Test
+    void failureToStartFailsTheFlight() {
+        final IOException failure = new IOException("not connected");
+        final CompletableFuture<ModelNode> failed = singleFlight.execute(KEY, () -> {
+            throw failure;
+        });
+        final ExecutionException thrown = assertThrows(ExecutionException.class, failed::get);
+        assertSame(failure, thrown.getCause());
+
+        assertNotNull(singleFlight.execute(KEY, execution));
+        assertEquals(1, executions.size());
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wildfly.quarkus.deployment;
+
+import io.quarkus.builder.item.MultiBuildItem;
+
+/**
+ * The name of a WildFly client referenced by a {@link org.wildfly.quarkus.runtime.WildFlyClientName} qualifier.
+ */
+public final class WildFlyClientNameBuildItem extends MultiBuildItem {
+
+    private final String name;
+
+    public WildFlyClientNameBuildItem(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -15,43 +15,101 @@
  */
 package org.wildfly.quarkus.deployment;
 
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.DotName;
 import org.wildfly.quarkus.runtime.ModelControllerClientProducer;
 import org.wildfly.quarkus.runtime.ModelControllerClientRecorder;
+import org.wildfly.quarkus.runtime.ReactiveModelControllerClient;
+import org.wildfly.quarkus.runtime.WildFlyClientName;
+import org.wildfly.quarkus.runtime.WildFlyClientStatistics;
 import org.wildfly.quarkus.runtime.WildFlyConfig;
 
 import io.quarkus.arc.deployment.AdditionalBeanBuildItem;
 import io.quarkus.arc.deployment.BeanContainerBuildItem;
+import io.quarkus.arc.deployment.SyntheticBeanBuildItem;
 import io.quarkus.deployment.annotations.BuildProducer;
 import io.quarkus.deployment.annotations.BuildStep;
 import io.quarkus.deployment.annotations.ExecutionTime;
 import io.quarkus.deployment.annotations.Record;
+import io.quarkus.deployment.builditem.CombinedIndexBuildItem;
+import io.quarkus.deployment.builditem.ExecutorBuildItem;
 import io.quarkus.deployment.builditem.FeatureBuildItem;
 import io.quarkus.deployment.builditem.ShutdownContextBuildItem;
 import io.quarkus.smallrye.health.deployment.spi.HealthBuildItem;
 
+import jakarta.inject.Singleton;
+
 class WildflyClientProcessor {
 
     private static final String FEATURE = "wildfly";
+    private static final DotName WILDFLY_CLIENT_NAME = DotName.createSimple(WildFlyClientName.class.getName());
 
     @BuildStep
     AdditionalBeanBuildItem registerProducer() {
-        return AdditionalBeanBuildItem.unremovableOf(ModelControllerClientProducer.class);
+        return AdditionalBeanBuildItem.builder()
+                .addBeanClasses(ModelControllerClientProducer.class, WildFlyClientName.class, WildFlyClientStatistics.class)
+                .setUnremovable()
+                .build();
     }
 
     @BuildStep
     HealthBuildItem addHealthCheck(WildFlyBuildTimeConfig buildTimeConfig) {
-        return new HealthBuildItem("io.quarkus.wildfly.client.health.WildFlyHealthCheck",
+        return new HealthBuildItem("org.wildfly.quarkus.health.WildFlyHealthCheck",
                 buildTimeConfig.healthEnabled, "wildfly-client");
     }
 
+    @BuildStep
+    void clientNames(CombinedIndexBuildItem index, BuildProducer<WildFlyClientNameBuildItem> clientNames) {
+        Set<String> names = new TreeSet<>();
+        for (AnnotationInstance annotation : index.getIndex().getAnnotations(WILDFLY_CLIENT_NAME)) {
+            names.add(annotation.value().asString());
+        }
+        for (String name : names) {
+            clientNames.produce(new WildFlyClientNameBuildItem(name));
+        }
+    }
+
     @BuildStep
     @Record(ExecutionTime.RUNTIME_INIT)
     void build(BuildProducer<FeatureBuildItem> feature,
             ModelControllerClientRecorder recorder,
             BeanContainerBuildItem beanContainer,
             ShutdownContextBuildItem shutdown,
+            ExecutorBuildItem executor,
             WildFlyConfig config) {
         feature.produce(new FeatureBuildItem(FEATURE));
-        recorder.createClient(beanContainer.getValue(), config, shutdown);
+        recorder.createClient(beanContainer.getValue(), config, shutdown, executor.getExecutorProxy());
+    }
+
+    @BuildStep
+    @Record(ExecutionTime.RUNTIME_INIT)
+    void namedClients(List<WildFlyClientNameBuildItem> clientNames,
+            ModelControllerClientRecorder recorder,
+            ShutdownContextBuildItem shutdown,
+            ExecutorBuildItem executor,
+            WildFlyConfig config,
+            BuildProducer<SyntheticBeanBuildItem> syntheticBeans) {
+        for (WildFlyClientNameBuildItem clientName : clientNames) {
+            String name = clientName.getName();
+            syntheticBeans.produce(SyntheticBeanBuildItem.configure(ModelControllerClient.class)
+                    .scope(Singleton.class)
+                    .addQualifier().annotation(WILDFLY_CLIENT_NAME).addValue("value", name).done()
+                    .setRuntimeInit()
+                    .unremovable()
+                    .supplier(recorder.namedClient(name, config, shutdown, executor.getExecutorProxy()))
+                    .done());
+            syntheticBeans.produce(SyntheticBeanBuildItem.configure(ReactiveModelControllerClient.class)
+                    .scope(Singleton.class)
+                    .addQualifier().annotation(WILDFLY_CLIENT_NAME).addValue("value", name).done()
+                    .setRuntimeInit()
+                    .unremovable()
+                    .supplier(recorder.reactiveNamedClient(name))
+                    .done());
+        }
     }
 }
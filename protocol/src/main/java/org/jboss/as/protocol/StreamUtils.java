@@ -22,6 +22,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import javax.xml.stream.XMLStreamWriter;
 
@@ -33,6 +38,9 @@ import org.jboss.as.protocol.logging.ProtocolLogger;
 public final class StreamUtils {
 
     private static final int BUFFER_SIZE = 8192;
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+    private static final long MAP_SIZE = 16 * 1024 * 1024;
 
     private StreamUtils() {
         //
@@ -54,6 +62,46 @@ public final class StreamUtils {
         }
     }
 
+    /**
+     * Copies the contents of a file. Files larger than 1 MiB are memory mapped in regions, so that the data is copied only once
+     * from the page cache into the output. Smaller files are read directly from the file channel. Either way no buffers besides
+     * one transfer array are allocated.
+     *
+     * @param file the file to copy
+     * @param out the output to copy to
+     * @return the number of bytes copied
+     * @throws IOException for any error
+     */
+    public static long copyFile(final Path file, final DataOutput out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final byte[] bytes = new byte[(int) Math.min(FILE_BUFFER_SIZE, Math.max(size, 1))];
+            if (size < MAP_THRESHOLD) {
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                long copied = 0;
+                int cnt;
+                while ((cnt = channel.read(buffer)) != -1) {
+                    out.write(bytes, 0, cnt);
+                    buffer.clear();
+                    copied += cnt;
+                }
+                return copied;
+            }
+            long position = 0;
+            while (position < size) {
+                final MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_SIZE, size - position));
+                while (region.hasRemaining()) {
+                    final int cnt = Math.min(bytes.length, region.remaining());
+                    region.get(bytes, 0, cnt);
+                    out.write(bytes, 0, cnt);
+                }
+                position += region.capacity();
+            }
+            return position;
+        }
+    }
+
     public static void safeClose(final Closeable closeable) {
         if (closeable != null) {
             try {
@@ -19,10 +19,8 @@ import java.io.DataInput;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -76,20 +74,18 @@ public abstract class AbstractMessageHandler
         return callback;
     }
 
-    private final ConcurrentMap<Integer, ActiveOperationImpl<?, ?>> activeRequests = new ConcurrentHashMap<>(16, 0.75f,
-            Runtime.getRuntime().availableProcessors());
+    private final ConcurrentIntMap<ActiveOperationImpl<?, ?>> activeRequests = new ConcurrentIntMap<>();
     private final ManagementBatchIdManager operationIdManager = new ManagementBatchIdManager.DefaultManagementBatchIdManager();
 
+    // only used to signal awaitCompletion(), registration and removal of operations don't take the lock
     private final ReentrantLock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
     private final ExecutorService executorService;
     private final AtomicInteger requestID = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
 
-    private final Map<Integer, ActiveRequest<?, ?>> requests = new ConcurrentHashMap<Integer, ActiveRequest<?, ?>>(16,
-            0.75f, Runtime.getRuntime().availableProcessors());
+    private final ConcurrentIntMap<ActiveRequest<?, ?>> requests = new ConcurrentIntMap<>();
 
-    // mutable variables, have to be guarded by the lock
-    private int activeCount = 0;
     private volatile boolean shutdown = false;
 
     protected AbstractMessageHandler(final ExecutorService executorService) {
@@ -130,12 +126,7 @@ public abstract class AbstractMessageHandler
      */
     @Override
     public void shutdown() {
-        lock.lock();
-        try {
-            shutdown = true;
-        } finally {
-            lock.unlock();
-        }
+        shutdown = true;
     }
 
     /**
@@ -161,17 +152,17 @@ public abstract class AbstractMessageHandler
         lock.lock();
         try {
             assert shutdown;
-            while (activeCount != 0) {
+            while (activeCount.get() != 0) {
                 long remaining = deadline - System.currentTimeMillis();
                 if (remaining <= 0) {
                     break;
                 }
                 condition.await(remaining, TimeUnit.MILLISECONDS);
             }
-            boolean allComplete = activeCount == 0;
+            boolean allComplete = activeCount.get() == 0;
             if (!allComplete) {
                 ProtocolLogger.ROOT_LOGGER.debugf("ActiveOperation(s) %s have not completed within %d %s",
-                        activeRequests.keySet(), timeout, unit);
+                        Arrays.toString(activeRequests.keys()), timeout, unit);
             }
             return allComplete;
         } finally {
@@ -229,10 +220,13 @@ public abstract class AbstractMessageHandler
                 ProtocolLogger.CONNECTION_LOGGER.noSuchRequest(response.getResponseId(), channel);
                 safeWriteErrorResponse(channel, header,
                         ProtocolLogger.ROOT_LOGGER.responseHandlerNotFound(response.getResponseId()));
-            } else if (response.getError() != null) {
-                request.handleFailed(response);
             } else {
-                handleRequest(channel, input, header, request);
+                untrackRequest(request.context, response.getResponseId());
+                if (response.getError() != null) {
+                    request.handleFailed(response);
+                } else {
+                    handleRequest(channel, input, header, request);
+                }
             }
         } else {
             // Handle requests (or other messages)
@@ -263,9 +257,10 @@ public abstract class AbstractMessageHandler
             final ActiveOperation<T, A> support) {
         assert support != null;
         updateChannelRef(support, channel);
-        final Integer requestId = this.requestID.incrementAndGet();
+        final int requestId = this.requestID.incrementAndGet();
         final ActiveRequest<T, A> ar = new ActiveRequest<T, A>(support, request);
         requests.put(requestId, ar);
+        trackRequest(support, requestId);
         final ManagementRequestHeader header = new ManagementRequestHeader(ManagementProtocol.VERSION, requestId,
                 support.getOperationId(), request.getOperationType());
         final ActiveOperation.ResultHandler<T> resultHandler = support.getResultHandler();
@@ -275,6 +270,7 @@ public abstract class AbstractMessageHandler
         } catch (Exception e) {
             resultHandler.failed(e);
             requests.remove(requestId);
+            untrackRequest(support, requestId);
         }
         return support.getResult();
     }
@@ -386,36 +382,33 @@ public abstract class AbstractMessageHandler
      */
     protected <T, A> ActiveOperation<T, A> registerActiveOperation(final Integer id, A attachment,
             ActiveOperation.CompletedCallback<T> callback) {
-        lock.lock();
-        try {
-            // Check that we still allow registration
-            // TODO WFCORE-199 distinguish client uses from server uses and limit this check to server uses
-            // Using id==null may be one way to do this, but we need to consider ops that involve multiple requests
-            // TODO WFCORE-845 consider using an IllegalStateException for this
-            // assert ! shutdown;
-            final Integer operationId;
-            if (id == null) {
-                // If we did not get an operationId, create a new one
-                operationId = operationIdManager.createBatchId();
-            } else {
-                // Check that the operationId is not already taken
-                if (!operationIdManager.lockBatchId(id)) {
-                    throw ProtocolLogger.ROOT_LOGGER.operationIdAlreadyExists(id);
-                }
-                operationId = id;
-            }
-            final ActiveOperationImpl<T, A> request = new ActiveOperationImpl<T, A>(operationId, attachment,
-                    getCheckedCallback(callback), this);
-            final ActiveOperation<?, ?> existing = activeRequests.putIfAbsent(operationId, request);
-            if (existing != null) {
-                throw ProtocolLogger.ROOT_LOGGER.operationIdAlreadyExists(operationId);
+        // Check that we still allow registration
+        // TODO WFCORE-199 distinguish client uses from server uses and limit this check to server uses
+        // Using id==null may be one way to do this, but we need to consider ops that involve multiple requests
+        // TODO WFCORE-845 consider using an IllegalStateException for this
+        // assert ! shutdown;
+        final Integer operationId;
+        if (id == null) {
+            // If we did not get an operationId, create a new one
+            operationId = operationIdManager.createBatchId();
+        } else {
+            // Check that the operationId is not already taken
+            if (!operationIdManager.lockBatchId(id)) {
+                throw ProtocolLogger.ROOT_LOGGER.operationIdAlreadyExists(id);
             }
-            ProtocolLogger.ROOT_LOGGER.tracef("Registered active operation %d", operationId);
-            activeCount++; // condition.signalAll();
-            return request;
-        } finally {
-            lock.unlock();
+            operationId = id;
+        }
+        final ActiveOperationImpl<T, A> request = new ActiveOperationImpl<T, A>(operationId, attachment,
+                getCheckedCallback(callback), this);
+        // Count the operation before it becomes visible, so that a concurrent removal can't drop the count below zero
+        activeCount.incrementAndGet();
+        final ActiveOperation<?, ?> existing = activeRequests.putIfAbsent(operationId, request);
+        if (existing != null) {
+            activeCount.decrementAndGet();
+            throw ProtocolLogger.ROOT_LOGGER.operationIdAlreadyExists(operationId);
         }
+        ProtocolLogger.ROOT_LOGGER.tracef("Registered active operation %d", operationId);
+        return request;
     }
 
     /**
@@ -460,33 +453,33 @@ public abstract class AbstractMessageHandler
      * @return the removed active operation, {@code null} if there was no registered operation
      */
     protected <T, A> ActiveOperation<T, A> removeActiveOperation(Integer id) {
-        final ActiveOperation<T, A> removed = removeUnderLock(id);
-        if (removed != null) {
-            for (final Map.Entry<Integer, ActiveRequest<?, ?>> requestEntry : requests.entrySet()) {
-                final ActiveRequest<?, ?> request = requestEntry.getValue();
-                if (request.context == removed) {
-                    requests.remove(requestEntry.getKey());
-                }
+        final ActiveOperation<T, A> removed = deregister(id);
+        if (removed instanceof ActiveOperationImpl) {
+            // Only the requests of the removed operation have to be cleaned up, see executeRequest()
+            for (final int requestId : ((ActiveOperationImpl<?, ?>) removed).drainRequestIds()) {
+                requests.remove(requestId);
             }
         }
         return removed;
     }
 
     @SuppressWarnings("unchecked")
-    private <T, A> ActiveOperation<T, A> removeUnderLock(final Integer id) {
-        lock.lock();
-        try {
-            final ActiveOperation<?, ?> removed = activeRequests.remove(id);
-            if (removed != null) {
-                ProtocolLogger.ROOT_LOGGER.tracef("Deregistered active operation %d", id);
-                activeCount--;
-                operationIdManager.freeBatchId(id);
-                condition.signalAll();
+    private <T, A> ActiveOperation<T, A> deregister(final Integer id) {
+        final ActiveOperation<?, ?> removed = activeRequests.remove(id);
+        if (removed != null) {
+            ProtocolLogger.ROOT_LOGGER.tracef("Deregistered active operation %d", id);
+            operationIdManager.freeBatchId(id);
+            // awaitCompletion() checks the count after shutdown was set, only the last operation has to signal
+            if (activeCount.decrementAndGet() == 0 && shutdown) {
+                lock.lock();
+                try {
+                    condition.signalAll();
+                } finally {
+                    lock.unlock();
+                }
             }
-            return (ActiveOperation<T, A>) removed;
-        } finally {
-            lock.unlock();
         }
+        return (ActiveOperation<T, A>) removed;
     }
 
     /**
@@ -569,6 +562,18 @@ public abstract class AbstractMessageHandler
         }
     }
 
+    private static void trackRequest(final ActiveOperation<?, ?> operation, final int requestId) {
+        if (operation instanceof ActiveOperationImpl) {
+            ((ActiveOperationImpl<?, ?>) operation).addRequestId(requestId);
+        }
+    }
+
+    private static void untrackRequest(final ActiveOperation<?, ?> operation, final int requestId) {
+        if (operation instanceof ActiveOperationImpl) {
+            ((ActiveOperationImpl<?, ?>) operation).removeRequestId(requestId);
+        }
+    }
+
     private static class ActiveRequest<T, A> {
 
         private final ActiveOperation<T, A> context;
@@ -32,6 +32,7 @@ limitations under the License.
 package org.jboss.as.protocol.mgmt;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executor;
@@ -56,6 +57,7 @@ class ActiveOperationImpl<T, A> extends AsyncFutureTask<T> implements ActiveOper
     };
 
     private static final List<Cancellable> CANCEL_REQUESTED = Collections.emptyList();
+    private static final int[] NO_REQUESTS = new int[0];
 
     private final A attachment;
     private final Integer operationId;
@@ -63,6 +65,11 @@ class ActiveOperationImpl<T, A> extends AsyncFutureTask<T> implements ActiveOper
     private List<Cancellable> cancellables;
     private volatile Channel channel;
 
+    // ids of the requests currently pending for this operation, guarded by requestIdsLock
+    private final Object requestIdsLock = new Object();
+    private int[] requestIds = NO_REQUESTS;
+    private int requestCount;
+
     ActiveOperationImpl(final Integer operationId, final A attachment, final CompletedCallback<T> callback,
             final AbstractMessageHandler handler) {
         super(directExecutor);
@@ -204,4 +211,51 @@ class ActiveOperationImpl<T, A> extends AsyncFutureTask<T> implements ActiveOper
         }
     }
 
+    /**
+     * Record a request which has been sent on behalf of this operation.
+     *
+     * @param requestId the request id
+     */
+    void addRequestId(final int requestId) {
+        synchronized (requestIdsLock) {
+            if (requestCount == requestIds.length) {
+                requestIds = Arrays.copyOf(requestIds, requestCount == 0 ? 2 : requestCount << 1);
+            }
+            requestIds[requestCount++] = requestId;
+        }
+    }
+
+    /**
+     * Forget a request which has been completed or failed.
+     *
+     * @param requestId the request id
+     */
+    void removeRequestId(final int requestId) {
+        synchronized (requestIdsLock) {
+            for (int i = 0; i < requestCount; i++) {
+                if (requestIds[i] == requestId) {
+                    requestIds[i] = requestIds[--requestCount];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get and clear the ids of all pending requests of this operation.
+     *
+     * @return the pending request ids
+     */
+    int[] drainRequestIds() {
+        synchronized (requestIdsLock) {
+            if (requestCount == 0) {
+                return NO_REQUESTS;
+            }
+            final int[] drained = Arrays.copyOf(requestIds, requestCount);
+            requestIds = NO_REQUESTS;
+            requestCount = 0;
+            return drained;
+        }
+    }
+
 }
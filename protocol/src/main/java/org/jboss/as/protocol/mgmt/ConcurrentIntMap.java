@@ -0,0 +1,235 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.protocol.mgmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent map with primitive {@code int} keys, used for the request and operation lookups on the hot path of the
+ * {@link AbstractMessageHandler}.
+ * <p>
+ * The map is split into segments of open addressing tables. Lookups don't take any lock. Modifications lock the segment of the
+ * key only. Removed entries are marked as deleted and cleaned up when the table is rebuilt, so a slot is never reused for
+ * another key while readers might still probe it.
+ *
+ * @param <V> the value type
+ */
+final class ConcurrentIntMap<V> {
+
+    private static final int MAX_SEGMENTS = 64;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Object DELETED = new Object();
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+
+    @SuppressWarnings("unchecked")
+    ConcurrentIntMap() {
+        int bits = 0;
+        final int processors = Runtime.getRuntime().availableProcessors();
+        while ((1 << bits) < processors && (1 << bits) < MAX_SEGMENTS) {
+            bits++;
+        }
+        segments = new Segment[1 << bits];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<V>();
+        }
+        // the high bits select the segment, the low bits the slot within the segment
+        segmentShift = 32 - bits;
+        segmentMask = segments.length - 1;
+    }
+
+    V get(final int key) {
+        final int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    V put(final int key, final V value) {
+        final int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, false);
+    }
+
+    V putIfAbsent(final int key, final V value) {
+        final int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    V remove(final int key) {
+        final int hash = hash(key);
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * Get a snapshot of the values. Entries which are added or removed concurrently may or may not be included.
+     *
+     * @return the values
+     */
+    List<V> values() {
+        final List<V> values = new ArrayList<V>();
+        for (final Segment<V> segment : segments) {
+            segment.collectValues(values);
+        }
+        return values;
+    }
+
+    /**
+     * Get a snapshot of the keys. Entries which are added or removed concurrently may or may not be included.
+     *
+     * @return the keys
+     */
+    int[] keys() {
+        int[] keys = new int[INITIAL_CAPACITY];
+        int count = 0;
+        for (final Segment<V> segment : segments) {
+            final Table table = segment.table;
+            for (int i = 0; i < table.keys.length; i++) {
+                final Object value = table.values.get(i);
+                if (value != null && value != DELETED) {
+                    if (count == keys.length) {
+                        keys = Arrays.copyOf(keys, count << 1);
+                    }
+                    keys[count++] = table.keys[i];
+                }
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    private Segment<V> segmentFor(final int hash) {
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    private static int hash(final int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Table {
+
+        // a key is written once before its value is published and never changes afterwards
+        final int[] keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+
+        Table(final int capacity) {
+            keys = new int[capacity];
+            values = new AtomicReferenceArray<Object>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment<V> {
+
+        private volatile Table table = new Table(INITIAL_CAPACITY);
+        // guarded by this
+        private int size;
+        private int used;
+
+        @SuppressWarnings("unchecked")
+        V get(final int key, final int hash) {
+            final Table table = this.table;
+            int index = hash & table.mask;
+            for (int probes = 0; probes <= table.mask; probes++) {
+                // read the value first, it publishes the key
+                final Object value = table.values.get(index);
+                if (value == null) {
+                    return null;
+                } else if (value != DELETED && table.keys[index] == key) {
+                    return (V) value;
+                }
+                index = (index + 1) & table.mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(final int key, final int hash, final V value, final boolean onlyIfAbsent) {
+            final Table table = this.table;
+            int index = hash & table.mask;
+            Object existing;
+            while ((existing = table.values.get(index)) != null) {
+                if (existing != DELETED && table.keys[index] == key) {
+                    if (!onlyIfAbsent) {
+                        table.values.set(index, value);
+                    }
+                    return (V) existing;
+                }
+                index = (index + 1) & table.mask;
+            }
+            table.keys[index] = key;
+            table.values.set(index, value);
+            size++;
+            if (++used > (table.keys.length >>> 2) * 3) {
+                rebuild(table);
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(final int key, final int hash) {
+            final Table table = this.table;
+            int index = hash & table.mask;
+            Object existing;
+            while ((existing = table.values.get(index)) != null) {
+                if (existing != DELETED && table.keys[index] == key) {
+                    table.values.set(index, DELETED);
+                    size--;
+                    return (V) existing;
+                }
+                index = (index + 1) & table.mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        void collectValues(final List<V> values) {
+            final Table table = this.table;
+            for (int i = 0; i < table.keys.length; i++) {
+                final Object value = table.values.get(i);
+                if (value != null && value != DELETED) {
+                    values.add((V) value);
+                }
+            }
+        }
+
+        // Copies the live entries into a new table, which drops all deleted slots
+        private void rebuild(final Table old) {
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < (size << 2)) {
+                capacity <<= 1;
+            }
+            final Table table = new Table(capacity);
+            for (int i = 0; i < old.keys.length; i++) {
+                final Object value = old.values.get(i);
+                if (value != null && value != DELETED) {
+                    final int key = old.keys[i];
+                    int index = hash(key) & table.mask;
+                    while (table.values.get(index) != null) {
+                        index = (index + 1) & table.mask;
+                    }
+                    table.keys[index] = key;
+                    table.values.lazySet(index, value);
+                }
+            }
+            used = size;
+            this.table = table;
+        }
+    }
+}
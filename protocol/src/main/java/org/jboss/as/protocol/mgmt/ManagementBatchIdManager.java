@@ -15,8 +15,7 @@
  */
 package org.jboss.as.protocol.mgmt;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Responsible for generating new unique batch ids on the server side of a channel. The batch ids are used to group several
@@ -49,33 +48,145 @@ public interface ManagementBatchIdManager {
      */
     void freeBatchId(int id);
 
+    /**
+     * Default implementation which keeps the ids in a fixed number of stripes. Each stripe is a primitive open addressing hash
+     * set guarded by its own monitor, so concurrent callers only contend if their ids fall into the same stripe and neither
+     * boxing nor per-id allocations take place.
+     */
     class DefaultManagementBatchIdManager implements ManagementBatchIdManager {
 
-        private final Set<Integer> ids = new HashSet<Integer>();
+        private static final int MAX_STRIPES = 64;
 
-        @Override
-        public synchronized boolean lockBatchId(int id) {
-            if (ids.contains(id)) {
-                return false;
+        private final Stripe[] stripes;
+        private final int stripeMask;
+
+        public DefaultManagementBatchIdManager() {
+            int count = 1;
+            final int processors = Runtime.getRuntime().availableProcessors() << 1;
+            while (count < processors && count < MAX_STRIPES) {
+                count <<= 1;
+            }
+            stripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new Stripe();
             }
-            ids.add(id);
-            return true;
+            stripeMask = count - 1;
         }
 
         @Override
-        public synchronized int createBatchId() {
-            int next = (int) (Math.random() * Integer.MAX_VALUE);
-            while (ids.contains(next)) {
-                next = (int) (Math.random() * Integer.MAX_VALUE);
+        public boolean lockBatchId(int id) {
+            final int hash = mix(id);
+            return stripes[hash & stripeMask].add(id, hash);
+        }
+
+        @Override
+        public int createBatchId() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            int next = random.nextInt(Integer.MAX_VALUE);
+            while (!lockBatchId(next)) {
+                next = random.nextInt(Integer.MAX_VALUE);
             }
-            ids.add(next);
             return next;
         }
 
         @Override
-        public synchronized void freeBatchId(int id) {
-            ids.remove(id);
+        public void freeBatchId(int id) {
+            final int hash = mix(id);
+            stripes[hash & stripeMask].remove(id, hash);
         }
 
+        private static int mix(final int id) {
+            final int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * Linear probing int set using {@code 0} as free marker. The id {@code 0} itself is tracked separately.
+         */
+        private static final class Stripe {
+
+            private static final int INITIAL_CAPACITY = 16;
+
+            private int[] keys = new int[INITIAL_CAPACITY];
+            private int size;
+            private boolean containsZero;
+
+            synchronized boolean add(final int id, final int hash) {
+                if (id == 0) {
+                    if (containsZero) {
+                        return false;
+                    }
+                    containsZero = true;
+                    return true;
+                }
+                final int[] keys = this.keys;
+                final int mask = keys.length - 1;
+                // the low bits of the hash select the stripe, use the high bits for the slot
+                int index = (hash >>> 8) & mask;
+                int key;
+                while ((key = keys[index]) != 0) {
+                    if (key == id) {
+                        return false;
+                    }
+                    index = (index + 1) & mask;
+                }
+                keys[index] = id;
+                if (++size > (keys.length >>> 1)) {
+                    rehash(keys.length << 1);
+                }
+                return true;
+            }
+
+            synchronized void remove(final int id, final int hash) {
+                if (id == 0) {
+                    containsZero = false;
+                    return;
+                }
+                final int[] keys = this.keys;
+                final int mask = keys.length - 1;
+                int index = (hash >>> 8) & mask;
+                int key;
+                while ((key = keys[index]) != 0) {
+                    if (key == id) {
+                        keys[index] = 0;
+                        size--;
+                        shiftBack(keys, index, mask);
+                        return;
+                    }
+                    index = (index + 1) & mask;
+                }
+            }
+
+            // Backward shift deletion, keeps probe sequences intact without tombstones
+            private static void shiftBack(final int[] keys, int free, final int mask) {
+                int index = (free + 1) & mask;
+                int key;
+                while ((key = keys[index]) != 0) {
+                    final int home = (mix(key) >>> 8) & mask;
+                    if (((index - home) & mask) >= ((index - free) & mask)) {
+                        keys[free] = key;
+                        keys[index] = 0;
+                        free = index;
+                    }
+                    index = (index + 1) & mask;
+                }
+            }
+
+            private void rehash(final int capacity) {
+                final int[] old = keys;
+                final int[] keys = new int[capacity];
+                final int mask = capacity - 1;
+                for (final int key : old) {
+                    if (key != 0) {
+                        int index = (mix(key) >>> 8) & mask;
+                        while (keys[index] != 0) {
+                            index = (index + 1) & mask;
+                        }
+                        keys[index] = key;
+                    }
+                }
+                this.keys = keys;
+            }
+        }
     }
 }
@@ -45,6 +45,18 @@ public final class ManagementChannelReceiver implements Channel.Receiver {
         return new ManagementChannelReceiver(handler);
     }
 
+    private static final ThreadLocal<Boolean> RECEIVING = new ThreadLocal<>();
+
+    /**
+     * Whether the current thread is handling a message received by a management channel. The next message of the channel is
+     * only received once that thread returns, so it must not block waiting for a response.
+     *
+     * @return {@code true} if called by a thread handling a received message
+     */
+    public static boolean isReceiveThread() {
+        return RECEIVING.get() != null;
+    }
+
     private final ManagementMessageHandler handler;
     private volatile long lastMessageTime;
 
@@ -54,6 +66,7 @@ public final class ManagementChannelReceiver implements Channel.Receiver {
 
     @Override
     public void handleMessage(final Channel channel, final MessageInputStream message) {
+        RECEIVING.set(Boolean.TRUE);
         try {
             ProtocolLogger.ROOT_LOGGER.tracef("%s handling incoming data", this);
             lastMessageTime = System.currentTimeMillis();
@@ -93,6 +106,7 @@ public final class ManagementChannelReceiver implements Channel.Receiver {
         } catch (Exception e) {
             handleError(channel, new IOException(e));
         } finally {
+            RECEIVING.remove();
             StreamUtils.safeClose(message);
             ProtocolLogger.ROOT_LOGGER.tracef("%s done handling incoming data", this);
         }
@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.protocol;
+
+import java.io.BufferedInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares {@link StreamUtils#copyFile(Path, DataOutput)} with copying a buffered file stream, which is how file attachments
+ * were sent before. Both copy into a {@link DataOutput} which discards the data. Run it with
+ *
+ * <pre>
+ * mvn test -pl protocol -Dtest=StreamUtilsBenchmark -Dbenchmark=true
+ * </pre>
+ *
+ * For every file size the fastest of several rounds is printed as milliseconds and allocated bytes per copy.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StreamUtilsBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    @TempDir Path dir;
+
+    @Test
+    void copyFile() throws Exception {
+        for (int size : new int[] { 64 * 1024, 16 * 1024 * 1024, 256 * 1024 * 1024 }) {
+            final Path file = dir.resolve("file-" + size);
+            final byte[] chunk = new byte[1024 * 1024];
+            new Random(size).nextBytes(chunk);
+            try (OutputStream out = Files.newOutputStream(file)) {
+                for (int written = 0; written < size; written += chunk.length) {
+                    out.write(chunk, 0, Math.min(chunk.length, size - written));
+                }
+            }
+            report("copyFile", size, out -> StreamUtils.copyFile(file, out));
+            report("buffered stream", size, out -> {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                    StreamUtils.copyStream(in, out);
+                }
+            });
+            Files.delete(file);
+        }
+    }
+
+    private static void report(final String name, final int size, final Copy copy) throws Exception {
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        // enough copies per round that small files are measurable, the first round warms up the code and the page cache
+        final int copies = Math.max(1, (256 * 1024 * 1024) / size);
+        long nanos = Long.MAX_VALUE;
+        long bytes = Long.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            final CountingOutputStream counter = new CountingOutputStream();
+            final DataOutputStream out = new DataOutputStream(counter);
+            final long allocated = bean.getThreadAllocatedBytes(thread);
+            final long start = System.nanoTime();
+            for (int i = 0; i < copies; i++) {
+                copy.copy(out);
+            }
+            final long elapsed = System.nanoTime() - start;
+            final long allocation = bean.getThreadAllocatedBytes(thread) - allocated;
+            assertEquals((long) size * copies, counter.count);
+            if (round > 0) {
+                nanos = Math.min(nanos, elapsed);
+                bytes = Math.min(bytes, allocation);
+            }
+        }
+        System.out.printf("%-16s size=%10d %9.3f ms/copy %10d bytes/copy%n", name, size, nanos / 1e6 / copies,
+                bytes / copies);
+    }
+
+    private interface Copy {
+
+        void copy(DataOutput out) throws Exception;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamUtilsTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void copyFileAroundBufferAndMappingBoundaries() throws Exception {
+        final int kib = 1024;
+        final int mib = 1024 * kib;
+        // empty, the transfer array, the mapping threshold and the size of a mapped region
+        for (int size : new int[] { 0, 1, 64 * kib - 1, 64 * kib + 1, mib - 1, mib, mib + 1, 16 * mib, 16 * mib + 3,
+                40 * mib + 7 }) {
+            final byte[] data = new byte[size];
+            new Random(size).nextBytes(data);
+            final Path file = Files.write(dir.resolve("file-" + size), data);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(size);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                assertEquals(size, StreamUtils.copyFile(file, out));
+            }
+            assertArrayEquals(data, bytes.toByteArray(), "size " + size);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.protocol.mgmt;
+
+import java.io.DataInput;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AbstractMessageHandlerTest {
+
+    private ExecutorService executor;
+    private TestHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+        handler = new TestHandler(executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void completionCostIsIndependentOfInFlightOperations() throws Exception {
+        final int completions = 20_000;
+        // warm up, so that the first measurement is not dominated by class loading and compilation
+        for (int i = 0; i < 5; i++) {
+            completeOperations(completions);
+        }
+        final long idle = fastest(completions);
+
+        final List<ActiveOperation<Void, Void>> inFlight = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            final ActiveOperation<Void, Void> operation = handler.registerActiveOperation(null);
+            handler.executeRequest(new TestRequest(), null, operation);
+            inFlight.add(operation);
+        }
+        final long loaded = fastest(completions);
+
+        // scanning every pending request on completion made this several hundred times slower
+        assertTrue(loaded < idle * 10, "completing with 100000 operations in flight took " + loaded + "ns, idle " + idle
+                + "ns");
+
+        for (ActiveOperation<Void, Void> operation : inFlight) {
+            operation.getResultHandler().done(null);
+        }
+        handler.shutdown();
+        assertTrue(handler.awaitCompletion(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void concurrentCompletionKeepsRequestsOfOtherOperations() throws Exception {
+        final List<ActiveOperation<Void, Void>> inFlight = new ArrayList<>();
+        final List<TestRequest> survivors = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            final ActiveOperation<Void, Void> operation = handler.registerActiveOperation(null);
+            final TestRequest request = new TestRequest();
+            handler.executeRequest(request, null, operation);
+            inFlight.add(operation);
+            survivors.add(request);
+        }
+
+        final List<TestRequest> completed = new ArrayList<>();
+        final List<Future<List<TestRequest>>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                final List<TestRequest> requests = new ArrayList<>();
+                for (int i = 0; i < 20_000; i++) {
+                    final ActiveOperation<Void, Void> operation = handler.registerActiveOperation(null);
+                    final TestRequest first = new TestRequest();
+                    final TestRequest second = new TestRequest();
+                    handler.executeRequest(first, null, operation);
+                    handler.executeRequest(second, null, operation);
+                    if (i % 2 == 0) {
+                        operation.getResultHandler().done(null);
+                    } else {
+                        operation.getResultHandler().failed(new Exception());
+                    }
+                    if (i % 1_000 == 0) {
+                        requests.add(first);
+                        requests.add(second);
+                    }
+                }
+                return requests;
+            }));
+        }
+        for (Future<List<TestRequest>> future : futures) {
+            completed.addAll(future.get());
+        }
+
+        // the requests of completed operations are gone, the ones of the operations still in flight must be found
+        for (TestRequest request : completed) {
+            respond(request);
+            assertEquals(0, request.responses.get());
+        }
+        for (TestRequest request : survivors) {
+            respond(request);
+            assertEquals(1, request.responses.get());
+        }
+        for (ActiveOperation<Void, Void> operation : inFlight) {
+            operation.getResultHandler().done(null);
+        }
+        handler.shutdown();
+        assertTrue(handler.awaitCompletion(1, TimeUnit.SECONDS));
+    }
+
+    private long fastest(final int completions) {
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            fastest = Math.min(fastest, completeOperations(completions));
+        }
+        return fastest;
+    }
+
+    private long completeOperations(final int count) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            final ActiveOperation<Void, Void> operation = handler.registerActiveOperation(null);
+            handler.executeRequest(new TestRequest(), null, operation);
+            operation.getResultHandler().done(null);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void respond(final TestRequest request) throws Exception {
+        handler.handleMessage(null, null, new ManagementResponseHeader(ManagementProtocol.VERSION, request.requestId, null));
+    }
+
+    private static class TestHandler extends AbstractMessageHandler {
+
+        TestHandler(final ExecutorService executorService) {
+            super(executorService);
+        }
+    }
+
+    private static class TestRequest implements ManagementRequest<Void, Void> {
+
+        private final AtomicInteger responses = new AtomicInteger();
+        private volatile int requestId;
+
+        @Override
+        public byte getOperationType() {
+            return 0;
+        }
+
+        @Override
+        public void sendRequest(final ActiveOperation.ResultHandler<Void> resultHandler,
+                final ManagementRequestContext<Void> context) {
+            requestId = ((ManagementRequestHeader) context.getRequestHeader()).getRequestId();
+        }
+
+        @Override
+        public void handleRequest(final DataInput input, final ActiveOperation.ResultHandler<Void> resultHandler,
+                final ManagementRequestContext<Void> context) {
+            responses.incrementAndGet();
+        }
+
+        @Override
+        public void handleFailed(final ManagementResponseHeader header,
+                final ActiveOperation.ResultHandler<Void> resultHandler) {
+            //
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.protocol.mgmt;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Compares {@link ConcurrentIntMap} with a {@code ConcurrentHashMap<Integer, ?>} for the access pattern of
+ * {@link AbstractMessageHandler}: every thread puts a fresh request id, looks it up once and removes it again, while a number
+ * of other ids stay in the map. Run it with
+ *
+ * <pre>
+ * mvn test -pl protocol -Dtest=ConcurrentIntMapBenchmark -Dbenchmark=true
+ * </pre>
+ *
+ * For every map and thread count the fastest of several rounds is printed as nanoseconds and allocated bytes per put/get/remove
+ * cycle.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ConcurrentIntMapBenchmark {
+
+    private static final int IN_FLIGHT = 10_000;
+    private static final int CYCLES = 2_000_000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void putGetRemove() throws Exception {
+        for (int threads : new int[] { 1, 4, 8 }) {
+            final IntMap intMap = new IntMap() {
+                private final ConcurrentIntMap<Object> map = new ConcurrentIntMap<>();
+
+                @Override
+                public void put(final int key, final Object value) {
+                    map.put(key, value);
+                }
+
+                @Override
+                public Object get(final int key) {
+                    return map.get(key);
+                }
+
+                @Override
+                public Object remove(final int key) {
+                    return map.remove(key);
+                }
+            };
+            final IntMap hashMap = new IntMap() {
+                private final ConcurrentHashMap<Integer, Object> map = new ConcurrentHashMap<>();
+
+                @Override
+                public void put(final int key, final Object value) {
+                    map.put(key, value);
+                }
+
+                @Override
+                public Object get(final int key) {
+                    return map.get(key);
+                }
+
+                @Override
+                public Object remove(final int key) {
+                    return map.remove(key);
+                }
+            };
+            report("ConcurrentIntMap", threads, intMap);
+            report("ConcurrentHashMap", threads, hashMap);
+        }
+    }
+
+    private static void report(final String name, final int threads, final IntMap map) throws Exception {
+        final AtomicInteger ids = new AtomicInteger();
+        final Object value = new Object();
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            map.put(ids.incrementAndGet(), value);
+        }
+        long nanos = Long.MAX_VALUE;
+        long bytes = Long.MAX_VALUE;
+        // the first round warms up the code
+        for (int round = 0; round <= ROUNDS; round++) {
+            final long[] result = run(threads, map, ids, value);
+            if (round > 0) {
+                nanos = Math.min(nanos, result[0]);
+                bytes = Math.min(bytes, result[1]);
+            }
+        }
+        System.out.printf("%-18s threads=%d %8.1f ns/cycle %6.1f bytes/cycle%n", name, threads, (double) nanos / CYCLES,
+                (double) bytes / ((long) CYCLES * threads));
+    }
+
+    private static long[] run(final int threads, final IntMap map, final AtomicInteger ids, final Object value)
+            throws Exception {
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    final long allocated = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                    final long start = System.nanoTime();
+                    for (int i = 0; i < CYCLES; i++) {
+                        final int id = ids.incrementAndGet();
+                        map.put(id, value);
+                        if (map.get(id) != value || map.remove(id) != value) {
+                            throw new AssertionError(id);
+                        }
+                    }
+                    return new long[] { System.nanoTime() - start,
+                            bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated };
+                }));
+            }
+            long nanos = 0;
+            long bytes = 0;
+            for (Future<long[]> future : futures) {
+                final long[] result = future.get();
+                nanos = Math.max(nanos, result[0]);
+                bytes += result[1];
+            }
+            return new long[] { nanos, bytes };
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface IntMap {
+
+        void put(int key, Object value);
+
+        Object get(int key);
+
+        Object remove(int key);
+    }
+}
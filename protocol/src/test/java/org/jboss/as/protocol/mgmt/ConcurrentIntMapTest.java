@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.protocol.mgmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ConcurrentIntMapTest {
+
+    @Test
+    void churnMatchesHashMap() {
+        final ConcurrentIntMap<Integer> map = new ConcurrentIntMap<>();
+        final Map<Integer, Integer> expected = new HashMap<>();
+        final Random random = new Random(42);
+        // a small key range forces collisions, deleted markers and rebuilds
+        for (int i = 0; i < 2_000_000; i++) {
+            final int key = random.nextInt(4096) - 2048;
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.put(key, i), map.put(key, i));
+                    break;
+                case 1:
+                    assertEquals(expected.putIfAbsent(key, i), map.putIfAbsent(key, i));
+                    break;
+                case 2:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.get(key));
+                    break;
+            }
+        }
+        for (int key = -2048; key < 2048; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        final int[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).sorted().toArray(), keys);
+        final List<Integer> values = map.values();
+        values.sort(null);
+        final List<Integer> expectedValues = new ArrayList<>(expected.values());
+        expectedValues.sort(null);
+        assertEquals(expectedValues, values);
+    }
+
+    @Test
+    void concurrentWritersOwningDisjointKeys() throws Exception {
+        final ConcurrentIntMap<Integer> map = new ConcurrentIntMap<>();
+        final Map<Integer, Integer> expected = new ConcurrentHashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    final Random random = new Random(thread);
+                    for (int i = 0; i < 300_000; i++) {
+                        // keys of different threads interleave in the same segments
+                        final int key = random.nextInt(2048) * 8 + thread;
+                        if (random.nextBoolean()) {
+                            assertEquals(expected.put(key, i), map.put(key, i));
+                        } else {
+                            assertEquals(expected.remove(key), map.remove(key));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertEquals(expected.size(), map.keys().length);
+    }
+
+    @Test
+    void lockFreeReadsDuringRebuilds() throws Exception {
+        final ConcurrentIntMap<Object> map = new ConcurrentIntMap<>();
+        final Object[] stable = new Object[1024];
+        for (int key = 0; key < stable.length; key++) {
+            stable[key] = new Object();
+            map.put(key, stable[key]);
+        }
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            final List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                readers.add(executor.submit(() -> {
+                    final Random random = new Random();
+                    while (running.get()) {
+                        final int key = random.nextInt(stable.length);
+                        // the stable keys are never removed and must be visible across every rebuild
+                        assertSame(stable[key], map.get(key), "key " + key);
+                        assertNull(map.get(-1 - key));
+                    }
+                }));
+            }
+            final Future<?> writer = executor.submit(() -> {
+                final Random random = new Random(1);
+                for (int i = 0; i < 2_000_000; i++) {
+                    final int key = stable.length + random.nextInt(100_000);
+                    if (random.nextBoolean()) {
+                        map.put(key, key);
+                    } else {
+                        map.remove(key);
+                    }
+                }
+            });
+            writer.get();
+            running.set(false);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
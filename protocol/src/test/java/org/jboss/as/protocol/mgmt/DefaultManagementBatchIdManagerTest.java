@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.jboss.as.protocol.mgmt;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.as.protocol.mgmt.ManagementBatchIdManager.DefaultManagementBatchIdManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DefaultManagementBatchIdManagerTest {
+
+    @Test
+    void churnMatchesHashSet() {
+        final DefaultManagementBatchIdManager manager = new DefaultManagementBatchIdManager();
+        final Set<Integer> expected = new HashSet<>();
+        final Random random = new Random(42);
+        // a small key range forces collisions, rehashes and backward shifts
+        for (int i = 0; i < 1_000_000; i++) {
+            final int id = random.nextInt(2048) - 1024;
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(id), manager.lockBatchId(id), "lock " + id);
+            } else {
+                manager.freeBatchId(id);
+                expected.remove(id);
+            }
+        }
+        for (int id = -1024; id < 1024; id++) {
+            assertEquals(!expected.contains(id), manager.lockBatchId(id), "contains " + id);
+        }
+    }
+
+    @Test
+    void removeKeepsCollidingIdsReachable() {
+        final DefaultManagementBatchIdManager manager = new DefaultManagementBatchIdManager();
+        final Set<Integer> expected = new HashSet<>();
+        final Random random = new Random(7);
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 500; i++) {
+                final int id = random.nextInt();
+                if (expected.add(id)) {
+                    assertTrue(manager.lockBatchId(id));
+                }
+            }
+            // remove about half of the ids, then every remaining id must still be found
+            for (Integer id : new ArrayList<>(expected)) {
+                if (random.nextBoolean()) {
+                    manager.freeBatchId(id);
+                    expected.remove(id);
+                }
+            }
+            for (Integer id : expected) {
+                assertFalse(manager.lockBatchId(id), "lost " + id);
+            }
+        }
+    }
+
+    @Test
+    void createdIdsAreUnique() {
+        final DefaultManagementBatchIdManager manager = new DefaultManagementBatchIdManager();
+        final Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(ids.add(manager.createBatchId()));
+        }
+        for (Integer id : ids) {
+            manager.freeBatchId(id);
+            assertTrue(manager.lockBatchId(id));
+        }
+    }
+
+    @Test
+    void concurrentThreadsOwningDisjointIds() throws Exception {
+        final DefaultManagementBatchIdManager manager = new DefaultManagementBatchIdManager();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    final Set<Integer> expected = new HashSet<>();
+                    final Random random = new Random(thread);
+                    for (int i = 0; i < 200_000; i++) {
+                        // ids of different threads interleave in the same stripes
+                        final int id = random.nextInt(4096) * 8 + thread;
+                        if (random.nextBoolean()) {
+                            assertEquals(expected.add(id), manager.lockBatchId(id));
+                        } else {
+                            manager.freeBatchId(id);
+                            expected.remove(id);
+                        }
+                    }
+                    for (Integer id : expected) {
+                        assertFalse(manager.lockBatchId(id));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
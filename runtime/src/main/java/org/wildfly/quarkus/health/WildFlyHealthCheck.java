@@ -15,6 +15,7 @@
  */
 package org.wildfly.quarkus.health;
 
+import java.lang.annotation.Annotation;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -26,11 +27,13 @@ import org.eclipse.microprofile.health.Readiness;
 import org.jboss.as.controller.client.ModelControllerClient;
 import org.jboss.as.controller.client.helpers.Operations;
 import org.jboss.dmr.ModelNode;
+import org.wildfly.quarkus.runtime.WildFlyClientName;
 
 import io.quarkus.arc.Arc;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Any;
 import jakarta.enterprise.inject.spi.Bean;
 
 @Readiness
@@ -41,19 +44,30 @@ public class WildFlyHealthCheck implements HealthCheck {
 
     @PostConstruct
     protected void init() {
-        Set<Bean<?>> beans = Arc.container().beanManager().getBeans(ModelControllerClient.class);
+        Set<Bean<?>> beans = Arc.container().beanManager().getBeans(ModelControllerClient.class, Any.Literal.INSTANCE);
         for (Bean<?> bean : beans) {
-            if (bean.getName() == null) {
-                // this is the default mongo client: retrieve it by type
+            String name = clientName(bean);
+            if (name == null) {
+                // this is the default client: retrieve it by type
                 ModelControllerClient defaultClient = Arc.container().instance(ModelControllerClient.class).get();
                 clients.put(DEFAULT_CLIENT, defaultClient);
             } else {
-                ModelControllerClient client = (ModelControllerClient) Arc.container().instance(bean.getName()).get();
-                clients.put(bean.getName(), client);
+                ModelControllerClient client = Arc.container()
+                        .instance(ModelControllerClient.class, WildFlyClientName.Literal.of(name)).get();
+                clients.put(name, client);
             }
         }
     }
 
+    private static String clientName(Bean<?> bean) {
+        for (Annotation qualifier : bean.getQualifiers()) {
+            if (qualifier instanceof WildFlyClientName) {
+                return ((WildFlyClientName) qualifier).value();
+            }
+        }
+        return null;
+    }
+
     @Override
     public HealthCheckResponse call() {
         HealthCheckResponseBuilder builder = HealthCheckResponse.named("WildFly health check").up();
@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wildfly.quarkus.runtime;
+
+/**
+ * The executor used by the WildFly client for asynchronous tasks like reading attachments and operation responses.
+ */
+public enum ExecutorType {
+
+    /**
+     * A fixed thread pool owned by the client. The number of threads is configured by {@code executor.size}.
+     */
+    FIXED,
+
+    /**
+     * The virtual thread executor of Quarkus. Falls back to the Quarkus worker pool if virtual threads are not supported.
+     */
+    VIRTUAL,
+
+    /**
+     * The worker pool managed by Quarkus.
+     */
+    QUARKUS,
+}
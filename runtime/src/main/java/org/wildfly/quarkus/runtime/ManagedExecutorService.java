@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wildfly.quarkus.runtime;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts an executor managed by Quarkus to the {@code ExecutorService} required by the WildFly client. The lifecycle of the
+ * underlying executor belongs to Quarkus: shutting down this executor service only rejects new tasks, and it counts as
+ * terminated once the tasks it submitted have finished.
+ */
+class ManagedExecutorService extends AbstractExecutorService {
+
+    private final Executor executor;
+    private final Object lock = new Object();
+    private boolean shutdown;
+    private int running;
+
+    ManagedExecutorService(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        synchronized (lock) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            running++;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    finished();
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            finished();
+            throw e;
+        }
+    }
+
+    private void finished() {
+        synchronized (lock) {
+            if (--running == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+        }
+    }
+
+    /**
+     * Rejects new tasks. Tasks already handed to the underlying executor cannot be withdrawn, so the returned list is always
+     * empty.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        synchronized (lock) {
+            return shutdown;
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        synchronized (lock) {
+            return shutdown && running == 0;
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (!shutdown || running > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            return true;
+        }
+    }
+}
@@ -35,4 +35,10 @@ public class ModelControllerClientProducer {
     public synchronized ModelControllerClient modelControllerClient() {
         return client;
     }
+
+    @Singleton
+    @Produces
+    public synchronized ReactiveModelControllerClient reactiveModelControllerClient() {
+        return new ReactiveModelControllerClient(client);
+    }
 }
@@ -18,6 +18,11 @@ package org.wildfly.quarkus.runtime;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.NameCallback;
@@ -26,50 +31,115 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.sasl.RealmCallback;
 
 import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.ModelControllerClientConfiguration;
+import org.jboss.as.controller.client.impl.BatchingModelControllerClient;
+import org.jboss.as.controller.client.impl.CachingModelControllerClient;
 import org.jboss.logging.Logger;
 
 import io.quarkus.arc.runtime.BeanContainer;
 import io.quarkus.runtime.ShutdownContext;
 import io.quarkus.runtime.annotations.Recorder;
+import io.quarkus.virtual.threads.VirtualThreadsRecorder;
 
 @Recorder
 public class ModelControllerClientRecorder {
 
     private static final Logger LOGGER = Logger.getLogger(ModelControllerClientRecorder.class);
-    private static volatile ModelControllerClient client;
+    static final String DEFAULT_CLIENT = "<default>";
+    private static final Map<String, ModelControllerClient> clients = new ConcurrentHashMap<>();
 
-    public void createClient(BeanContainer container, WildFlyConfig config, ShutdownContext shutdown) {
+    public void createClient(BeanContainer container, WildFlyConfig config, ShutdownContext shutdown,
+            Executor executor) {
+        ModelControllerClient client = createClient(DEFAULT_CLIENT, config.defaultClient, shutdown, executor);
+        ModelControllerClientProducer producer = container.beanInstance(ModelControllerClientProducer.class);
+        producer.initialize(client);
+    }
+
+    public Supplier<ModelControllerClient> namedClient(String name, WildFlyConfig config, ShutdownContext shutdown,
+            Executor executor) {
+        WildFlyClientConfig clientConfig = config.namedClients.get(name);
+        if (clientConfig == null) {
+            throw new IllegalStateException("No configuration found for WildFly client '" + name
+                    + "'. Please use quarkus.wildfly-client.\"" + name + "\".* to configure the client.");
+        }
+        ModelControllerClient client = createClient(name, clientConfig, shutdown, executor);
+        return () -> client;
+    }
+
+    public Supplier<ReactiveModelControllerClient> reactiveNamedClient(String name) {
+        return () -> new ReactiveModelControllerClient(clients.get(name));
+    }
+
+    private ModelControllerClient createClient(String name, WildFlyClientConfig config, ShutdownContext shutdown,
+            Executor executor) {
         try {
             String host = config.host.orElse("127.0.0.1");
             int port = config.port.orElse(9990);
             InetAddress address = InetAddress.getByName(host);
             String username = config.username.orElse("admin");
-            String password = config.username.orElse("admin");
-            client = ModelControllerClient.Factory.create(address, port, callbacks -> {
-                for (Callback current : callbacks) {
-                    if (current instanceof NameCallback) {
-                        NameCallback ncb = (NameCallback) current;
-                        ncb.setName(username);
-                    } else if (current instanceof PasswordCallback) {
-                        PasswordCallback pcb = (PasswordCallback) current;
-                        pcb.setPassword(password.toCharArray());
-                    } else if (current instanceof RealmCallback) {
-                        RealmCallback rcb = (RealmCallback) current;
-                        rcb.setText(rcb.getDefaultText());
-                    } else {
-                        throw new UnsupportedCallbackException(current);
-                    }
-                }
-            });
-            ModelControllerClientProducer producer = container.beanInstance(ModelControllerClientProducer.class);
-            producer.initialize(client);
-            shutdown.addShutdownTask(this::close);
+            String password = config.password.orElse("admin");
+            ModelControllerClientConfiguration.Builder builder = new ModelControllerClientConfiguration.Builder()
+                    .setHostName(address.getHostAddress())
+                    .setPort(port)
+                    .setCoalesceReadOperations(config.coalesceReadOperations)
+                    .setHandler(callbacks -> {
+                        for (Callback current : callbacks) {
+                            if (current instanceof NameCallback) {
+                                NameCallback ncb = (NameCallback) current;
+                                ncb.setName(username);
+                            } else if (current instanceof PasswordCallback) {
+                                PasswordCallback pcb = (PasswordCallback) current;
+                                pcb.setPassword(password.toCharArray());
+                            } else if (current instanceof RealmCallback) {
+                                RealmCallback rcb = (RealmCallback) current;
+                                rcb.setText(rcb.getDefaultText());
+                            } else {
+                                throw new UnsupportedCallbackException(current);
+                            }
+                        }
+                    });
+            switch (config.executorType) {
+                case VIRTUAL:
+                    builder.setExecutor(VirtualThreadsRecorder.getCurrent());
+                    break;
+                case QUARKUS:
+                    builder.setExecutor(new ManagedExecutorService(executor));
+                    break;
+                default:
+                    builder.setExecutorSize(config.executorSize);
+                    break;
+            }
+            ModelControllerClient client = config.connections > 1
+                    ? ModelControllerClient.Factory.createPooled(builder.build(), config.connections)
+                    : ModelControllerClient.Factory.create(builder.build());
+            if (config.batchEnabled) {
+                client = BatchingModelControllerClient.builder(client)
+                        .setWindow(config.batchWindow.toNanos(), TimeUnit.NANOSECONDS)
+                        .setMaxBatchSize(config.batchMaxSize)
+                        .build();
+            }
+            if (config.cacheEnabled) {
+                CachingModelControllerClient.Builder cache = CachingModelControllerClient.builder(client)
+                        .setTimeToLive(config.cacheTimeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                        .setMaxEntries(config.cacheMaxEntries);
+                config.cacheOperationTimeToLive.forEach(
+                        (operation, ttl) -> cache.setTimeToLive(operation, ttl.toMillis(), TimeUnit.MILLISECONDS));
+                client = cache.build();
+            }
+            clients.put(name, client);
+            shutdown.addShutdownTask(() -> close(name));
+            return client;
         } catch (UnknownHostException e) {
             throw new IllegalArgumentException("Unable to connect to WildFly: " + e.getMessage());
         }
     }
 
-    void close() {
+    static ModelControllerClient getClient(String name) {
+        return clients.get(name);
+    }
+
+    void close(String name) {
+        ModelControllerClient client = clients.remove(name);
         if (client != null) {
             try {
                 client.close();
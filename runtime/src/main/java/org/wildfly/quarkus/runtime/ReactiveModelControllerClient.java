@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wildfly.quarkus.runtime;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.as.controller.client.OperationResponse;
+import org.jboss.dmr.ModelNode;
+import org.jboss.logging.Logger;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+
+/**
+ * Mutiny based companion of {@link ModelControllerClient}. The operations are executed using
+ * {@link ModelControllerClient#executeOperationAsync(Operation, OperationMessageHandler)}, so no thread is blocked while
+ * waiting for the response. Cancelling a subscription cancels the operation on the server.
+ * <p>
+ * Items are emitted on the executor of this client, by default the Mutiny worker pool, never on the thread which reads the
+ * response from the connection. Subscribers may therefore block, for instance to read the streams attached to a response.
+ */
+public class ReactiveModelControllerClient {
+
+    private static final Logger LOGGER = Logger.getLogger(ReactiveModelControllerClient.class);
+
+    private final ModelControllerClient client;
+    private final Executor executor;
+
+    public ReactiveModelControllerClient(ModelControllerClient client) {
+        this(client, Infrastructure.getDefaultWorkerPool());
+    }
+
+    /**
+     * Creates a reactive client.
+     *
+     * @param client the blocking client to delegate to
+     * @param executor the executor used to emit the items
+     */
+    public ReactiveModelControllerClient(ModelControllerClient client, Executor executor) {
+        this.client = client;
+        this.executor = executor;
+    }
+
+    /**
+     * Executes the operation.
+     *
+     * @param operation the operation to execute
+     * @return the result of the operation
+     */
+    public Uni<ModelNode> execute(ModelNode operation) {
+        return Uni.createFrom().completionStage(() -> client.executeAsync(operation)).emitOn(executor);
+    }
+
+    /**
+     * Executes the operation.
+     * <p>
+     * Note that associated input-streams have to be closed by the caller, after the operation completed
+     * {@link org.jboss.as.controller.client.OperationAttachments#isAutoCloseStreams()}.
+     *
+     * @param operation the operation to execute
+     * @return the result of the operation
+     */
+    public Uni<ModelNode> execute(Operation operation) {
+        return Uni.createFrom().completionStage(() -> client.executeAsync(operation, OperationMessageHandler.DISCARD))
+                .emitOn(executor);
+    }
+
+    /**
+     * Executes the operation and emits the response including any input streams attached by the server. The caller is
+     * responsible for closing the response.
+     *
+     * @param operation the operation to execute
+     * @param messageHandler the message handler to use for operation progress reporting, or {@code null} for none
+     * @return the response of the operation
+     */
+    public Uni<OperationResponse> executeOperation(Operation operation, OperationMessageHandler messageHandler) {
+        return Uni.createFrom().completionStage(() -> client.executeOperationAsync(operation, messageHandler))
+                .emitOn(executor);
+    }
+
+    /**
+     * Executes the operation and emits the input streams attached to the response, e.g. the contents of log files. The response
+     * and its streams are closed once the {@code Multi} terminates or is cancelled, so each stream must be consumed before the
+     * next item is requested. The streams can be read right away in the subscriber, which runs on the executor of this client.
+     *
+     * @param operation the operation to execute
+     * @return the input streams attached to the response
+     */
+    public Multi<OperationResponse.StreamEntry> executeForStreams(Operation operation) {
+        return executeOperation(operation, OperationMessageHandler.DISCARD)
+                .onItem().transformToMulti(response -> Multi.createFrom().iterable(response.getInputStreams())
+                        .onTermination().invoke(() -> close(response)));
+    }
+
+    /**
+     * @return the blocking client this reactive client delegates to
+     */
+    public ModelControllerClient getDelegate() {
+        return client;
+    }
+
+    private static void close(OperationResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            LOGGER.debugf("Unable to close operation response: %s", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wildfly.quarkus.runtime;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import io.quarkus.runtime.annotations.ConfigDocMapKey;
+import io.quarkus.runtime.annotations.ConfigGroup;
+import io.quarkus.runtime.annotations.ConfigItem;
+
+@ConfigGroup
+public class WildFlyClientConfig {
+
+    /**
+     * Configures the hostname.
+     */
+    @ConfigItem(defaultValue = "127.0.0.1") public Optional<String> host;
+
+    /**
+     * Configures the port.
+     */
+    @ConfigItem(defaultValue = "9990") public OptionalInt port;
+
+    /**
+     * Configures the username.
+     */
+    @ConfigItem public Optional<String> username;
+
+    /**
+     * Configures the password.
+     */
+    @ConfigItem public Optional<String> password;
+
+    /**
+     * Configures the executor used for asynchronous tasks like reading attachments and operation responses.
+     */
+    @ConfigItem(name = "executor.type", defaultValue = "fixed") public ExecutorType executorType;
+
+    /**
+     * Configures the number of threads if {@code executor.type} is {@code fixed}.
+     */
+    @ConfigItem(name = "executor.size", defaultValue = "6") public int executorSize;
+
+    /**
+     * Configures the number of connections to the server. If greater than one, operations are dispatched to the connection with
+     * the least operations in flight.
+     */
+    @ConfigItem(defaultValue = "1") public int connections;
+
+    /**
+     * Enables sharing one request between identical read-only operations which are in flight at the same time, like a burst of
+     * {@code read-resource} operations on the same address.
+     */
+    @ConfigItem(name = "coalesce-read-operations", defaultValue = "false") public boolean coalesceReadOperations;
+
+    /**
+     * Enables sending independent read-only operations submitted within a short window as one {@code composite} operation.
+     */
+    @ConfigItem(name = "batch.enabled", defaultValue = "false") public boolean batchEnabled;
+
+    /**
+     * Configures how long operations are collected after the first operation of a batch has been submitted.
+     */
+    @ConfigItem(name = "batch.window", defaultValue = "2ms") public Duration batchWindow;
+
+    /**
+     * Configures the maximum number of operations of a batch. A full batch is sent before its window closes.
+     */
+    @ConfigItem(name = "batch.max-size", defaultValue = "100") public int batchMaxSize;
+
+    /**
+     * Enables caching the responses of read-only operations like {@code read-attribute} or {@code read-resource}. Operations
+     * which modify the model invalidate the cached responses for overlapping addresses.
+     */
+    @ConfigItem(name = "cache.enabled", defaultValue = "false") public boolean cacheEnabled;
+
+    /**
+     * Configures how long the responses of read-only operations are cached.
+     */
+    @ConfigItem(name = "cache.time-to-live", defaultValue = "1S") public Duration cacheTimeToLive;
+
+    /**
+     * Configures how long the responses of specific operations are cached. Operations configured here are considered read-only,
+     * a time to live of zero disables caching the operation.
+     */
+    @ConfigDocMapKey("operation-name")
+    @ConfigItem(name = "cache.operation-time-to-live") public Map<String, Duration> cacheOperationTimeToLive;
+
+    /**
+     * Configures the maximum number of cached responses. The least recently used response is evicted, if the cache is full.
+     */
+    @ConfigItem(name = "cache.max-entries", defaultValue = "1000") public int cacheMaxEntries;
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright 2022 Red Hat
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wildfly.quarkus.runtime;
+
+import java.util.Optional;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.impl.CachingModelControllerClient;
+import org.jboss.as.controller.client.impl.CachingModelControllerClient.CacheStatistics;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Provides the statistics of the WildFly clients, which are not reachable through the injected {@link ModelControllerClient}.
+ */
+@ApplicationScoped
+public class WildFlyClientStatistics {
+
+    /**
+     * Returns a snapshot of the cache statistics of the default client.
+     *
+     * @return the statistics, or an empty optional if the client doesn't cache read-only operations
+     */
+    public Optional<CacheStatistics> getCacheStatistics() {
+        return cacheStatistics(ModelControllerClientRecorder.getClient(ModelControllerClientRecorder.DEFAULT_CLIENT));
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics of a named client.
+     *
+     * @param name the name of the client as used in {@link WildFlyClientName}
+     * @return the statistics, or an empty optional if there's no such client or it doesn't cache read-only operations
+     */
+    public Optional<CacheStatistics> getCacheStatistics(String name) {
+        return cacheStatistics(ModelControllerClientRecorder.getClient(name));
+    }
+
+    private static Optional<CacheStatistics> cacheStatistics(ModelControllerClient client) {
+        if (client instanceof CachingModelControllerClient) {
+            return Optional.of(((CachingModelControllerClient) client).getStatistics());
+        }
+        return Optional.empty();
+    }
+}
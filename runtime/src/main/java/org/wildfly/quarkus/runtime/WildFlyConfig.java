@@ -15,9 +15,10 @@
  */
 package org.wildfly.quarkus.runtime;
 
-import java.util.Optional;
-import java.util.OptionalInt;
+import java.util.Map;
 
+import io.quarkus.runtime.annotations.ConfigDocMapKey;
+import io.quarkus.runtime.annotations.ConfigDocSection;
 import io.quarkus.runtime.annotations.ConfigItem;
 import io.quarkus.runtime.annotations.ConfigPhase;
 import io.quarkus.runtime.annotations.ConfigRoot;
@@ -26,22 +27,14 @@ import io.quarkus.runtime.annotations.ConfigRoot;
 public class WildFlyConfig {
 
     /**
-     * Configures the hostname.
+     * The default client.
      */
-    @ConfigItem(defaultValue = "127.0.0.1") public Optional<String> host;
+    @ConfigItem(name = ConfigItem.PARENT) public WildFlyClientConfig defaultClient;
 
     /**
-     * Configures the port.
+     * Additional named clients.
      */
-    @ConfigItem(defaultValue = "9990") public OptionalInt port;
-
-    /**
-     * Configures the username.
-     */
-    @ConfigItem public Optional<String> username;
-
-    /**
-     * Configures the password.
-     */
-    @ConfigItem public Optional<String> password;
+    @ConfigDocSection
+    @ConfigDocMapKey("wildfly-client-name")
+    @ConfigItem(name = ConfigItem.PARENT) public Map<String, WildFlyClientConfig> namedClients;
 }
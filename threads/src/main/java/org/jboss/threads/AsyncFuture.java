@@ -16,6 +16,7 @@
 package org.jboss.threads;
 
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -118,6 +119,49 @@ public interface AsyncFuture<T> extends Future<T>, AsyncCancellable {
     /** {@inheritDoc} */
     void asyncCancel(boolean interruptionDesired);
 
+    /**
+     * Get a {@link CompletableFuture} view of this operation. The returned future is completed by a listener once this
+     * operation is done, so no thread is blocked while waiting for the outcome. Cancelling the returned future asynchronously
+     * cancels this operation.
+     *
+     * @return the completable future
+     */
+    default CompletableFuture<T> toCompletableFuture() {
+        final CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                final boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled) {
+                    asyncCancel(mayInterruptIfRunning);
+                }
+                return cancelled;
+            }
+        };
+        addListener(new Listener<T, CompletableFuture<T>>() {
+            @Override
+            public void handleComplete(final AsyncFuture<? extends T> asyncFuture, final CompletableFuture<T> attachment) {
+                try {
+                    attachment.complete(asyncFuture.getUninterruptibly());
+                } catch (Throwable t) {
+                    attachment.completeExceptionally(t);
+                }
+            }
+
+            @Override
+            public void handleFailed(final AsyncFuture<? extends T> asyncFuture, final Throwable cause,
+                    final CompletableFuture<T> attachment) {
+                attachment.completeExceptionally(cause);
+            }
+
+            @Override
+            public void handleCancelled(final AsyncFuture<? extends T> asyncFuture, final CompletableFuture<T> attachment) {
+                // don't use cancel(), that would cancel this operation again
+                attachment.completeExceptionally(new CancellationException("Operation was cancelled"));
+            }
+        }, future);
+        return future;
+    }
+
     /**
      * The possible statuses of an {@link AsyncFuture}.
      */
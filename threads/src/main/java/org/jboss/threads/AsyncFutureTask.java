@@ -15,29 +15,61 @@
  */
 package org.jboss.threads;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A base class for implementing asynchronous tasks. This class implements {@link java.util.concurrent.Future Future} as well as
  * {@link AsyncFuture}, and is approximately equivalent to {@link java.util.concurrent.FutureTask}, however it does not
  * implement {@link Runnable} and is somewhat more flexible.
+ * <p>
+ * The implementation does not use any locks. While the task is waiting, the state holds a stack of waiting threads and
+ * registered listeners. The first {@code set*()} method replaces the stack with the outcome using a single CAS, unparks the
+ * waiting threads and runs the listeners. Threads which stop waiting because of a timeout or an interrupt unlink their node
+ * from the stack, so polling a long running task with timed {@code get} calls doesn't grow the stack.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public abstract class AsyncFutureTask<T> implements AsyncFuture<T> {
 
+    @SuppressWarnings("rawtypes") private static final AtomicReferenceFieldUpdater<AsyncFutureTask, Object> stateUpdater = AtomicReferenceFieldUpdater
+            .newUpdater(AsyncFutureTask.class, Object.class, "state");
+
+    private static final Outcome CANCELLED = new Outcome(Status.CANCELLED, null);
+
     private final Executor executor;
-    private AsyncFuture.Status status;
-    private Object result;
-    private List<Reg<?>> listeners;
+    // either null, the top most Node of the stack of waiters and listeners or the final Outcome
+    private volatile Object state;
+
+    private static final class Outcome {
 
-    private final class Reg<A> implements Runnable {
+        private final Status status;
+        private final Object result;
+
+        private Outcome(final Status status, final Object result) {
+            this.status = status;
+            this.result = result;
+        }
+    }
+
+    private abstract static class Node {
+
+        // written before the node is pushed, changed afterwards only to unlink waiters which stopped waiting
+        volatile Node next;
+    }
+
+    private static final class Waiter extends Node {
+
+        // set to null if the thread stopped waiting
+        volatile Thread thread = Thread.currentThread();
+    }
+
+    private final class Reg<A> extends Node implements Runnable {
 
         private final AsyncFuture.Listener<? super T, A> listener;
         private final A attachment;
@@ -48,7 +80,8 @@ public abstract class AsyncFutureTask<T> implements AsyncFuture<T> {
         }
 
         public void run() {
-            switch (getStatus()) {
+            final Outcome outcome = (Outcome) state;
+            switch (outcome.status) {
                 case CANCELLED:
                     listener.handleCancelled(AsyncFutureTask.this, attachment);
                     break;
@@ -56,7 +89,7 @@ public abstract class AsyncFutureTask<T> implements AsyncFuture<T> {
                     listener.handleComplete(AsyncFutureTask.this, attachment);
                     break;
                 case FAILED:
-                    listener.handleFailed(AsyncFutureTask.this, (Throwable) result, attachment);
+                    listener.handleFailed(AsyncFutureTask.this, (Throwable) outcome.result, attachment);
             }
         }
     }
@@ -68,7 +101,6 @@ public abstract class AsyncFutureTask<T> implements AsyncFuture<T> {
      */
     protected AsyncFutureTask(final Executor executor) {
         this.executor = executor;
-        status = AsyncFuture.Status.WAITING;
     }
 
     /**
@@ -79,24 +111,7 @@ public abstract class AsyncFutureTask<T> implements AsyncFuture<T> {
      * @return {@code true} if the result was successfully set, or {@code false} if a result was already set
      */
     protected final boolean setResult(final T result) {
-        List<Reg<?>> list;
-        synchronized (this) {
-            if (status == AsyncFuture.Status.WAITING) {
-                this.result = result;
-                status = AsyncFuture.Status.COMPLETE;
-                notifyAll();
-                list = listeners;
-                listeners = null;
-            } else {
-                return false;
-            }
-        }
-        if (list != null) {
-            for (Reg<?> reg : list) {
-                safeExecute(reg);
-            }
-        }
-        return true;
+        return complete(new Outcome(Status.COMPLETE, result));
     }
 
     /**
@@ -106,23 +121,7 @@ public abstract class AsyncFutureTask<T> implements AsyncFuture<T> {
      * @return {@code true} if the result was successfully set, or {@code false} if a result was already set
      */
     protected final boolean setCancelled() {
-        List<Reg<?>> list;
-        synchronized (this) {
-            if (status == AsyncFuture.Status.WAITING) {
-                status = AsyncFuture.Status.CANCELLED;
-                notifyAll();
-                list = listeners;
-                listeners = null;
-            } else {
-                return false;
-            }
-        }
-        if (list != null) {
-            for (Reg<?> reg : list) {
-                safeExecute(reg);
-            }
-        }
-        return true;
+        return complete(CANCELLED);
     }
 
     /**
@@ -133,26 +132,95 @@ public abstract class AsyncFutureTask<T> implements AsyncFuture<T> {
      * @return {@code true} if the result was successfully set, or {@code false} if a result was already set
      */
     protected final boolean setFailed(final Throwable cause) {
-        List<Reg<?>> list;
-        synchronized (this) {
-            if (status == AsyncFuture.Status.WAITING) {
-                status = AsyncFuture.Status.FAILED;
-                result = cause;
-                notifyAll();
-                list = listeners;
-                listeners = null;
-            } else {
+        return complete(new Outcome(Status.FAILED, cause));
+    }
+
+    private boolean complete(final Outcome outcome) {
+        Object current;
+        do {
+            current = state;
+            if (current instanceof Outcome) {
                 return false;
             }
+        } while (!stateUpdater.compareAndSet(this, current, outcome));
+
+        // the stack is LIFO, wake up waiters and notify listeners in registration order. The nodes are not modified, since
+        // waiters which stopped waiting may still be unlinking themselves.
+        int count = 0;
+        for (Node node = (Node) current; node != null; node = node.next) {
+            count++;
+        }
+        final Node[] nodes = new Node[count];
+        Node node = (Node) current;
+        for (int i = count - 1; i >= 0 && node != null; i--) {
+            nodes[i] = node;
+            node = node.next;
         }
-        if (list != null) {
-            for (Reg<?> reg : list) {
-                safeExecute(reg);
+        for (Node waiter : nodes) {
+            if (waiter instanceof Waiter) {
+                final Thread thread = ((Waiter) waiter).thread;
+                if (thread != null) {
+                    LockSupport.unpark(thread);
+                }
             }
         }
+        for (Node reg : nodes) {
+            if (reg instanceof Reg) {
+                @SuppressWarnings("unchecked") final Reg<?> listener = (Reg<?>) reg;
+                safeExecute(listener);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Push a node onto the stack.
+     *
+     * @return {@code true} if the node was pushed, {@code false} if the task is already done
+     */
+    private boolean push(final Node node) {
+        Object current;
+        do {
+            current = state;
+            if (current instanceof Outcome) {
+                return false;
+            }
+            node.next = (Node) current;
+        } while (!stateUpdater.compareAndSet(this, current, node));
         return true;
     }
 
+    /**
+     * Unlink a waiter which stopped waiting, and any other waiter which stopped waiting, from the stack. Unlinked nodes keep
+     * their link to the next node, so a concurrent traversal never loses a live node.
+     */
+    private void removeWaiter(final Waiter waiter) {
+        waiter.thread = null;
+        retry: for (;;) {
+            final Object current = state;
+            if (!(current instanceof Node)) {
+                return;
+            }
+            Node pred = null;
+            Node next;
+            for (Node node = (Node) current; node != null; node = next) {
+                next = node.next;
+                if (!(node instanceof Waiter) || ((Waiter) node).thread != null) {
+                    pred = node;
+                } else if (pred != null) {
+                    pred.next = next;
+                    if (pred instanceof Waiter && ((Waiter) pred).thread == null) {
+                        // the predecessor was unlinked concurrently, start over
+                        continue retry;
+                    }
+                } else if (!stateUpdater.compareAndSet(this, node, next)) {
+                    continue retry;
+                }
+            }
+            return;
+        }
+    }
+
     private <A> void safeExecute(final Reg<A> reg) {
         try {
             executor.execute(reg);
@@ -172,179 +240,154 @@ public abstract class AsyncFutureTask<T> implements AsyncFuture<T> {
     public void asyncCancel(final boolean interruptionDesired) {
     }
 
-    /** {@inheritDoc} */
-    public final Status await() throws InterruptedException {
-        synchronized (this) {
-            while (status == Status.WAITING) {
-                wait();
+    /**
+     * Wait for the outcome.
+     *
+     * @param interruptible whether an interrupt stops waiting
+     * @param timeout the timeout in nanoseconds, or {@code -1} to wait forever
+     * @return the outcome, or {@code null} if the timeout elapsed
+     * @throws InterruptedException if {@code interruptible} is {@code true} and the thread was interrupted
+     */
+    private Outcome awaitOutcome(final boolean interruptible, final long timeout) throws InterruptedException {
+        Object current = state;
+        if (current instanceof Outcome) {
+            return (Outcome) current;
+        }
+        if (timeout == 0L) {
+            return null;
+        }
+        final Waiter waiter = new Waiter();
+        if (!push(waiter)) {
+            return (Outcome) state;
+        }
+        boolean intr = false;
+        boolean done = false;
+        try {
+            final long deadline = timeout > 0L ? System.nanoTime() + timeout : 0L;
+            for (;;) {
+                current = state;
+                if (current instanceof Outcome) {
+                    done = true;
+                    return (Outcome) current;
+                }
+                if (timeout > 0L) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0L) {
+                        return null;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+                if (Thread.interrupted()) {
+                    if (interruptible) {
+                        throw new InterruptedException();
+                    }
+                    intr = true;
+                }
+            }
+        } finally {
+            if (done) {
+                waiter.thread = null;
+            } else {
+                removeWaiter(waiter);
+            }
+            if (intr) {
+                Thread.currentThread().interrupt();
             }
-            return status;
         }
     }
 
+    private Outcome awaitOutcomeUninterruptibly(final long timeout) {
+        try {
+            return awaitOutcome(false, timeout);
+        } catch (InterruptedException e) {
+            // not thrown in uninterruptible mode
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Status statusOf(final Outcome outcome) {
+        return outcome == null ? Status.WAITING : outcome.status;
+    }
+
+    private T resultOf(final Outcome outcome) throws ExecutionException, TimeoutException {
+        switch (statusOf(outcome)) {
+            case CANCELLED:
+                throw new CancellationException("Operation was cancelled");
+            case FAILED:
+                throw new ExecutionException("Operation failed", (Throwable) outcome.result);
+            case COMPLETE:
+                @SuppressWarnings("unchecked") final T result = (T) outcome.result;
+                return result;
+            case WAITING:
+                throw new TimeoutException("Operation timed out");
+            default:
+                throw new IllegalStateException("Impossible switch case: " + outcome.status);
+        }
+    }
+
+    private T resultOfCompleted(final Outcome outcome) throws ExecutionException {
+        try {
+            return resultOf(outcome);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Impossible switch case: " + Status.WAITING);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public final Status await() throws InterruptedException {
+        return statusOf(awaitOutcome(true, -1L));
+    }
+
     /** {@inheritDoc} */
     public final Status await(final long timeout, final TimeUnit unit) throws InterruptedException {
-        long remaining = unit.toNanos(timeout);
-        long now = System.nanoTime();
-        Status status;
-        synchronized (this) {
-            for (;;) {
-                status = this.status;
-                if (remaining <= 0L || status != Status.WAITING) {
-                    return status;
-                }
-                wait(remaining / 1_000_000L, (int) (remaining % 1_000_000));
-                remaining -= -now + (now = System.nanoTime());
-            }
-        }
+        return statusOf(awaitOutcome(true, Math.max(0L, unit.toNanos(timeout))));
     }
 
     /** {@inheritDoc} */
     public final Status awaitUninterruptibly() {
-        synchronized (this) {
-            boolean intr = Thread.interrupted();
-            try {
-                while (status == Status.WAITING) {
-                    try {
-                        wait();
-                    } catch (InterruptedException e) {
-                        intr = true;
-                    }
-                }
-            } finally {
-                if (intr) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-            return status;
-        }
+        return statusOf(awaitOutcomeUninterruptibly(-1L));
     }
 
     /** {@inheritDoc} */
     public final Status awaitUninterruptibly(final long timeout, final TimeUnit unit) {
-        long remaining = unit.toNanos(timeout);
-        long now = System.nanoTime();
-        Status status;
-        boolean intr = Thread.interrupted();
-        try {
-            synchronized (this) {
-                for (;;) {
-                    status = this.status;
-                    if (remaining <= 0L || status != Status.WAITING) {
-                        return status;
-                    }
-                    try {
-                        wait(remaining / 1_000_000L, (int) (remaining % 1_000_000));
-                    } catch (InterruptedException e) {
-                        intr = true;
-                    }
-                    remaining -= -now + (now = System.nanoTime());
-                }
-            }
-        } finally {
-            if (intr) {
-                Thread.currentThread().interrupt();
-            }
-        }
+        return statusOf(awaitOutcomeUninterruptibly(Math.max(0L, unit.toNanos(timeout))));
     }
 
     /** {@inheritDoc} */
-    @SuppressWarnings({ "unchecked" })
     public final T get() throws InterruptedException, ExecutionException {
-        synchronized (AsyncFutureTask.this) {
-            final Status status = await();
-            switch (status) {
-                case CANCELLED:
-                    throw new CancellationException("Operation was cancelled");
-                case FAILED:
-                    throw new ExecutionException("Operation failed", (Throwable) result);
-                case COMPLETE:
-                    return (T) result;
-                default:
-                    throw new IllegalStateException("Impossible switch case: " + status);
-            }
-        }
+        return resultOfCompleted(awaitOutcome(true, -1L));
     }
 
     /** {@inheritDoc} */
-    @SuppressWarnings({ "unchecked" })
     public final T get(final long timeout, final TimeUnit unit)
             throws InterruptedException, ExecutionException, TimeoutException {
-        synchronized (AsyncFutureTask.this) {
-            final Status status = await(timeout, unit);
-            switch (status) {
-                case CANCELLED:
-                    throw new CancellationException("Operation was cancelled");
-                case FAILED:
-                    throw new ExecutionException("Operation failed", (Throwable) result);
-                case COMPLETE:
-                    return (T) result;
-                case WAITING:
-                    throw new TimeoutException("Operation timed out");
-                default:
-                    throw new IllegalStateException("Impossible switch case: " + status);
-            }
-        }
+        return resultOf(awaitOutcome(true, Math.max(0L, unit.toNanos(timeout))));
     }
 
     /** {@inheritDoc} */
-    @SuppressWarnings({ "unchecked" })
     public final T getUninterruptibly() throws CancellationException, ExecutionException {
-        synchronized (AsyncFutureTask.this) {
-            final Status status = awaitUninterruptibly();
-            switch (status) {
-                case CANCELLED:
-                    throw new CancellationException("Operation was cancelled");
-                case FAILED:
-                    throw new ExecutionException("Operation failed", (Throwable) result);
-                case COMPLETE:
-                    return (T) result;
-                default:
-                    throw new IllegalStateException("Impossible switch case: " + status);
-            }
-        }
+        return resultOfCompleted(awaitOutcomeUninterruptibly(-1L));
     }
 
     /** {@inheritDoc} */
-    @SuppressWarnings({ "unchecked" })
     public final T getUninterruptibly(final long timeout, final TimeUnit unit)
             throws CancellationException, ExecutionException, TimeoutException {
-        synchronized (AsyncFutureTask.this) {
-            final Status status = awaitUninterruptibly(timeout, unit);
-            switch (status) {
-                case CANCELLED:
-                    throw new CancellationException("Operation was cancelled");
-                case FAILED:
-                    throw new ExecutionException("Operation failed", (Throwable) result);
-                case COMPLETE:
-                    return (T) result;
-                case WAITING:
-                    throw new TimeoutException("Operation timed out");
-                default:
-                    throw new IllegalStateException("Impossible switch case: " + status);
-            }
-        }
+        return resultOf(awaitOutcomeUninterruptibly(Math.max(0L, unit.toNanos(timeout))));
     }
 
     /** {@inheritDoc} */
     public final Status getStatus() {
-        synchronized (AsyncFutureTask.this) {
-            return status;
-        }
+        final Object current = state;
+        return current instanceof Outcome ? ((Outcome) current).status : Status.WAITING;
     }
 
     /** {@inheritDoc} */
     public final <A> void addListener(final Listener<? super T, A> listener, final A attachment) {
-        synchronized (AsyncFutureTask.this) {
-            final Reg<A> reg = new Reg<A>(listener, attachment);
-            if (status == Status.WAITING) {
-                if (listeners == null) {
-                    listeners = new ArrayList<Reg<?>>();
-                }
-                listeners.add(reg);
-            } else {
-                safeExecute(reg);
-            }
+        final Reg<A> reg = new Reg<A>(listener, attachment);
+        if (!push(reg)) {
+            safeExecute(reg);
         }
     }
 